@@ -0,0 +1,35 @@
+package com.lawal.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks of the component with the GC profiler, which adds the
+ * allocation rate (gc.alloc.rate.norm, in bytes per operation) next to the
+ * time of each benchmark.
+ *
+ * It is the main class of the jar built by bench/pom.xml, which compiles the
+ * component sources together with the benchmarks:
+ *
+ * <pre>
+ * mvn -f bench/pom.xml package
+ * java -jar bench/target/benchmarks.jar PaintBenchmark
+ * </pre>
+ *
+ * A regular expression given as the first argument selects benchmarks, all
+ * run without one.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName())
+				.addProfiler(GCProfiler.class)
+				.forks(1)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,88 @@
+package com.lawal.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.RangeSliderBar;
+
+/**
+ * Variable maps as the client sends them while a knob is dragged: knobmin
+ * and knobmax as Doubles, a drag that moves every time, a drag that repeats
+ * the current value, and a single thumb of a multi thumb slider.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class ChangeVariablesBenchmark {
+
+	private static final int DRAG_LENGTH = 256;
+
+	private RangeSliderBar slider;
+	private RangeSliderBar thumbSlider;
+	/**
+	 * One map per position of a drag, built in advance like the maps the
+	 * terminal decodes from a request.
+	 */
+	private List<Map<String, Object>> drag;
+	private List<Map<String, Object>> thumbDrag;
+	private Map<String, Object> repeated;
+	private int position;
+
+	@Setup
+	public void setUp() {
+		slider = new RangeSliderBar(0, 1000, 1);
+		slider.setImmediate(true);
+		thumbSlider = new RangeSliderBar(0, 1000, 1);
+		thumbSlider.setThumbValues(0, 250, 500, 750, 1000);
+		drag = new ArrayList<Map<String, Object>>(DRAG_LENGTH);
+		thumbDrag = new ArrayList<Map<String, Object>>(DRAG_LENGTH);
+		for (int i = 0; i < DRAG_LENGTH; i++) {
+			drag.add(variables("knobmin", Double.valueOf(i), "knobmax", Double.valueOf(600)));
+			thumbDrag.add(variables("thumbindex", Integer.valueOf(2), "thumbvalue", Double.valueOf(400 + i)));
+		}
+		repeated = variables("knobmin", Double.valueOf(100), "knobmax", Double.valueOf(600));
+		position = 0;
+	}
+
+	private static Map<String, Object> variables(String name1, Object value1, String name2, Object value2) {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put(name1, value1);
+		variables.put(name2, value2);
+		return variables;
+	}
+
+	@Benchmark
+	public RangeSliderBar drag() {
+		position = (position + 1) & (DRAG_LENGTH - 1);
+		slider.changeVariables(this, drag.get(position));
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar repeated() {
+		slider.changeVariables(this, repeated);
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar thumbDrag() {
+		position = (position + 1) & (DRAG_LENGTH - 1);
+		thumbSlider.changeVariables(this, thumbDrag.get(position));
+		return thumbSlider;
+	}
+}
@@ -0,0 +1,80 @@
+package com.lawal.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.DoublePair;
+import com.lawal.Range;
+
+/**
+ * equals and hashCode of the boxed DoublePair against the primitive Range,
+ * for equal and different values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class DoublePairBenchmark {
+
+	private DoublePair pair;
+	private DoublePair equalPair;
+	private DoublePair otherPair;
+	private Range range;
+	private Range equalRange;
+	private Range otherRange;
+
+	@Setup
+	public void setUp() {
+		pair = new DoublePair(12.5, 87.5);
+		equalPair = new DoublePair(12.5, 87.5);
+		otherPair = new DoublePair(12.5, 88);
+		range = Range.valueOf(12.5, 87.5);
+		equalRange = Range.valueOf(12.5, 87.5);
+		otherRange = Range.valueOf(12.5, 88);
+	}
+
+	@Benchmark
+	public boolean pairEquals() {
+		return pair.equals(equalPair);
+	}
+
+	@Benchmark
+	public boolean pairNotEquals() {
+		return pair.equals(otherPair);
+	}
+
+	@Benchmark
+	public int pairHashCode() {
+		return pair.hashCode();
+	}
+
+	@Benchmark
+	public boolean rangeEquals() {
+		return range.equals(equalRange);
+	}
+
+	@Benchmark
+	public boolean rangeNotEquals() {
+		return range.equals(otherRange);
+	}
+
+	@Benchmark
+	public int rangeHashCode() {
+		return range.hashCode();
+	}
+
+	@Benchmark
+	public boolean rangeMatches() {
+		return range.matches(12.5, 87.5);
+	}
+}
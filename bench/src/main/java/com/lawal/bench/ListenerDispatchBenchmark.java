@@ -0,0 +1,58 @@
+package com.lawal.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.RangeSliderBar;
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+
+/**
+ * A value change from the client dispatched to a number of value change
+ * listeners that each read the new knob values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class ListenerDispatchBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int listeners;
+
+	private RangeSliderBar slider;
+	private double sum;
+	private int step;
+
+	@SuppressWarnings("serial")
+	@Setup
+	public void setUp() {
+		slider = new RangeSliderBar(0, 1000, 1);
+		for (int i = 0; i < listeners; i++) {
+			slider.addListener(new ValueChangeListener() {
+				public void valueChange(ValueChangeEvent event) {
+					RangeSliderBar source = (RangeSliderBar) event.getProperty();
+					sum += source.getKnobMax() - source.getKnobMin();
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	public double dispatch() {
+		step = (step + 1) & 255;
+		slider.setKnobValues(step, 500 + step);
+		return sum;
+	}
+}
@@ -0,0 +1,325 @@
+package com.lawal.bench;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lawal.RangeSliderBar;
+import com.lawal.RangeSliderBarApplication;
+import com.vaadin.Application;
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.terminal.PaintException;
+import com.vaadin.terminal.gwt.server.CommunicationManager;
+import com.vaadin.terminal.gwt.server.JsonPaintTarget;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
+import com.vaadin.ui.Window;
+
+/**
+ * A headless load generator measuring how many slider updates per second a
+ * node absorbs. It starts a number of {@link RangeSliderBarApplication}
+ * sessions, optionally adds more sliders to each, and has worker threads
+ * send knobmin/knobmax variable maps into changeVariables the way the
+ * terminal does: a new map per request, under the lock of the application.
+ * With --paint each update is also painted into a JSON paint target, like
+ * the response to the request.
+ *
+ * Every slider sends at most --rate updates per second, the rate a super
+ * immediate client throttled with setSuperImmediateRate sends at; 0 sends as
+ * fast as the threads can. At the end the harness prints the throughput, the
+ * latency percentiles of a single update and the heap growth per session.
+ *
+ * Options: --sessions=1000 --sliders=1 --threads=8 --seconds=30 --rate=20
+ * --paint
+ */
+public class LoadHarness {
+
+	/**
+	 * The number of latencies each thread keeps, later samples overwrite
+	 * random earlier ones.
+	 */
+	private static final int SAMPLES_PER_THREAD = 1 << 18;
+
+	private final int sessions;
+	private final int slidersPerSession;
+	private final int threads;
+	private final int seconds;
+	private final int rate;
+	private final boolean paint;
+
+	private final List<Session> allSessions = new ArrayList<Session>();
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	/**
+	 * A started application with its sliders and the communication manager
+	 * painting its responses.
+	 */
+	private static class Session {
+		final Application application;
+		final CommunicationManager manager;
+		final List<RangeSliderBar> sliders = new ArrayList<RangeSliderBar>();
+
+		Session(Application application) {
+			this.application = application;
+			this.manager = new CommunicationManager(application);
+		}
+	}
+
+	/**
+	 * One slider as driven by one simulated client.
+	 */
+	private static class Client {
+		final Session session;
+		final RangeSliderBar slider;
+		long nextSend = 0;
+		double position;
+
+		Client(Session session, RangeSliderBar slider) {
+			this.session = session;
+			this.slider = slider;
+			this.position = slider.getKnobMin();
+		}
+	}
+
+	private class Worker extends Thread {
+		final List<Client> clients = new ArrayList<Client>();
+		final long[] latencies = new long[SAMPLES_PER_THREAD];
+		final Random random;
+		final StringWriter buffer = new StringWriter(4096);
+		final PrintWriter writer = new PrintWriter(buffer);
+		long updates = 0;
+		CountDownLatch done;
+
+		Worker(int index) {
+			super("load-" + index);
+			random = new Random(index);
+		}
+
+		@Override
+		public void run() {
+			long interval = rate > 0 ? 1000000000L / rate : 0;
+			try {
+				while (running.get()) {
+					boolean sent = false;
+					for (Client client : clients) {
+						long now = System.nanoTime();
+						if (now < client.nextSend) {
+							continue;
+						}
+						client.nextSend = now + interval;
+						update(client);
+						long latency = System.nanoTime() - now;
+						if (updates < SAMPLES_PER_THREAD) {
+							latencies[(int) updates] = latency;
+						} else {
+							long slot = (long) (random.nextDouble() * updates);
+							if (slot < SAMPLES_PER_THREAD) {
+								latencies[(int) slot] = latency;
+							}
+						}
+						updates++;
+						sent = true;
+					}
+					if (!sent) {
+						Thread.yield();
+					}
+				}
+			} catch (PaintException e) {
+				throw new RuntimeException(e);
+			} finally {
+				done.countDown();
+			}
+		}
+
+		private void update(Client client) throws PaintException {
+			RangeSliderBar slider = client.slider;
+			// a random walk of the min knob, as a drag would send
+			double span = slider.getRangeMax() - slider.getRangeMin();
+			double step = slider.getStepSize() > 0 ? slider.getStepSize() : span / 100;
+			client.position += random.nextBoolean() ? step : -step;
+			if (client.position < slider.getRangeMin() || client.position > slider.getRangeMax()) {
+				client.position = slider.getRangeMin();
+			}
+			Map<String, Object> variables = new HashMap<String, Object>();
+			variables.put("knobmin", Double.valueOf(client.position));
+			variables.put("knobmax", Double.valueOf(slider.getRangeMax()));
+			synchronized (client.session.application) {
+				slider.changeVariables(this, variables);
+				if (paint) {
+					buffer.getBuffer().setLength(0);
+					JsonPaintTarget target = new JsonPaintTarget(client.session.manager, writer, true);
+					slider.paint(target);
+					target.close();
+					writer.flush();
+				}
+			}
+		}
+
+		int samples() {
+			return (int) Math.min(updates, SAMPLES_PER_THREAD);
+		}
+	}
+
+	public LoadHarness(int sessions, int slidersPerSession, int threads, int seconds, int rate, boolean paint) {
+		this.sessions = sessions;
+		this.slidersPerSession = slidersPerSession;
+		this.threads = threads;
+		this.seconds = seconds;
+		this.rate = rate;
+		this.paint = paint;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unknown argument " + arg);
+			}
+			int split = arg.indexOf('=');
+			if (split < 0) {
+				options.put(arg.substring(2), "true");
+			} else {
+				options.put(arg.substring(2, split), arg.substring(split + 1));
+			}
+		}
+		LoadHarness harness = new LoadHarness(intOption(options, "sessions", 1000), intOption(options,
+				"sliders", 1), intOption(options, "threads", 8), intOption(options, "seconds", 30), intOption(
+				options, "rate", 20), Boolean.parseBoolean(options.get("paint")));
+		harness.run();
+	}
+
+	private static int intOption(Map<String, String> options, String name, int defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	public void run() throws Exception {
+		long heapBefore = usedHeap();
+		createSessions();
+		long heapSessions = usedHeap();
+		System.out.printf("%d sessions with %d sliders each, %d threads, %d s, rate %s%n", sessions,
+				slidersPerSession, threads, seconds, rate > 0 ? rate + "/s per slider" : "unlimited");
+		System.out.printf("heap per session: %.1f kB%n", (heapSessions - heapBefore) / 1024.0 / sessions);
+
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Worker(i));
+		}
+		int next = 0;
+		for (Session session : allSessions) {
+			for (RangeSliderBar slider : session.sliders) {
+				workers.get(next++ % threads).clients.add(new Client(session, slider));
+			}
+		}
+		CountDownLatch done = new CountDownLatch(threads);
+		running.set(true);
+		long start = System.nanoTime();
+		for (Worker worker : workers) {
+			worker.done = done;
+			worker.start();
+		}
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		long heapAfter = usedHeap();
+
+		long updates = 0;
+		int samples = 0;
+		for (Worker worker : workers) {
+			updates += worker.updates;
+			samples += worker.samples();
+		}
+		long[] latencies = new long[samples];
+		int offset = 0;
+		for (Worker worker : workers) {
+			System.arraycopy(worker.latencies, 0, latencies, offset, worker.samples());
+			offset += worker.samples();
+		}
+		Arrays.sort(latencies);
+		System.out.printf("updates: %d, throughput: %.0f updates/s%n", updates, updates * 1e9 / elapsed);
+		System.out.printf("latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+				percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+				percentile(latencies, 99.9), samples > 0 ? latencies[samples - 1] / 1000.0 : 0);
+		System.out.printf("heap growth during the run: %.1f MB%n", (heapAfter - heapSessions) / 1024.0 / 1024.0);
+	}
+
+	private void createSessions() throws Exception {
+		URL url = new URL("http://localhost/load/");
+		for (int i = 0; i < sessions; i++) {
+			Application application = new RangeSliderBarApplication();
+			application.start(url, new Properties(), null);
+			Session session = new Session(application);
+			Window window = application.getMainWindow();
+			collectSliders(window, session.sliders);
+			while (session.sliders.size() < slidersPerSession) {
+				RangeSliderBar slider = new RangeSliderBar();
+				slider.setImmediate(true);
+				slider.addListener(new ValueChangeListener() {
+					private static final long serialVersionUID = 1L;
+
+					public void valueChange(ValueChangeEvent event) {
+						((RangeSliderBar) event.getProperty()).getRange();
+					}
+				});
+				window.addComponent(slider);
+				session.sliders.add(slider);
+			}
+			for (RangeSliderBar slider : session.sliders) {
+				slider.setSuperImmediateMode(true);
+				slider.setSuperImmediateRate(rate);
+				if (paint) {
+					// the first paint of the page
+					paintFull(session, slider);
+				}
+			}
+			allSessions.add(session);
+		}
+	}
+
+	private static void paintFull(Session session, RangeSliderBar slider) throws PaintException {
+		Writer discard = new StringWriter();
+		JsonPaintTarget target = new JsonPaintTarget(session.manager, new PrintWriter(discard), false);
+		slider.paint(target);
+		target.close();
+	}
+
+	private static void collectSliders(Component component, List<RangeSliderBar> sliders) {
+		if (component instanceof RangeSliderBar) {
+			sliders.add((RangeSliderBar) component);
+		} else if (component instanceof ComponentContainer) {
+			for (Iterator<Component> i = ((ComponentContainer) component).getComponentIterator(); i.hasNext();) {
+				collectSliders(i.next(), sliders);
+			}
+		}
+	}
+
+	private static double percentile(long[] sorted, double percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percent / 100 * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1000.0;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,95 @@
+package com.lawal.bench;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.HistogramEngine;
+import com.lawal.RangeSliderBar;
+import com.vaadin.Application;
+import com.vaadin.terminal.PaintException;
+import com.vaadin.terminal.gwt.server.CommunicationManager;
+import com.vaadin.terminal.gwt.server.JsonPaintTarget;
+
+/**
+ * Painting the component into the JSON paint target the terminal uses, after
+ * a knob move. With delta painting the partial paint only carries the knobs;
+ * the full paint sends everything, like the first paint of a page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class PaintBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean deltaPainting;
+
+	@Param({ "false", "true" })
+	public boolean histogram;
+
+	private CommunicationManager manager;
+	private RangeSliderBar slider;
+	private StringWriter buffer;
+	private PrintWriter writer;
+	private int step;
+
+	@SuppressWarnings("serial")
+	@Setup
+	public void setUp() throws PaintException {
+		Application application = new Application() {
+			@Override
+			public void init() {
+			}
+		};
+		manager = new CommunicationManager(application);
+		slider = new RangeSliderBar(0, 1000, 1);
+		slider.setDeltaPainting(deltaPainting);
+		if (histogram) {
+			HistogramEngine engine = HistogramEngine.forSlider(slider, 100);
+			for (int i = 0; i < 10000; i++) {
+				engine.add((i * 7919) % 1000);
+			}
+			slider.setHistogram(engine);
+		}
+		buffer = new StringWriter(4096);
+		writer = new PrintWriter(buffer);
+		// the first paint initializes the client side state deltas build on
+		paint(false);
+	}
+
+	private int paint(boolean cachingRequired) throws PaintException {
+		buffer.getBuffer().setLength(0);
+		JsonPaintTarget target = new JsonPaintTarget(manager, writer, cachingRequired);
+		slider.paint(target);
+		target.close();
+		writer.flush();
+		return buffer.getBuffer().length();
+	}
+
+	@Benchmark
+	public int partial() throws PaintException {
+		step = (step + 1) & 255;
+		slider.setKnobValues(step, 500 + step);
+		return paint(true);
+	}
+
+	@Benchmark
+	public int full() throws PaintException {
+		step = (step + 1) & 255;
+		slider.setKnobValues(step, 500 + step);
+		return paint(false);
+	}
+}
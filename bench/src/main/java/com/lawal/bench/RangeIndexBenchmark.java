@@ -0,0 +1,116 @@
+package com.lawal.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.RangeIndex;
+
+/**
+ * Range queries on a {@link RangeIndex} against a linear scan of the same
+ * keys. The queries cycle through random ranges, so that neither the
+ * branch predictor nor the JIT sees the same bounds twice in a row.
+ *
+ * Run main for a quick figure of the time per count query without JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class RangeIndexBenchmark {
+
+	private static final int QUERIES = 1024;
+
+	@Param({ "1000", "100000" })
+	public int rows;
+
+	private RangeIndex index;
+	private double[] keys;
+	private double[] mins;
+	private double[] maxs;
+	private int query = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		keys = new double[rows];
+		int[] ids = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			keys[i] = random.nextDouble() * 1000;
+			ids[i] = i;
+		}
+		index = new RangeIndex(rows);
+		index.addAll(keys, ids);
+		index.flush();
+		mins = new double[QUERIES];
+		maxs = new double[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			double a = random.nextDouble() * 1000;
+			double b = random.nextDouble() * 1000;
+			mins[i] = Math.min(a, b);
+			maxs[i] = Math.max(a, b);
+		}
+	}
+
+	private int next() {
+		query = (query + 1) & (QUERIES - 1);
+		return query;
+	}
+
+	@Benchmark
+	public int indexCount() {
+		int q = next();
+		return index.count(mins[q], maxs[q]);
+	}
+
+	@Benchmark
+	public int[] indexIds() {
+		int q = next();
+		return index.ids(mins[q], maxs[q]);
+	}
+
+	@Benchmark
+	public int scanCount() {
+		int q = next();
+		double min = mins[q];
+		double max = maxs[q];
+		int count = 0;
+		for (double key : keys) {
+			if (key >= min && key <= max) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public static void main(String[] args) {
+		for (int rows : new int[] { 1000, 100000 }) {
+			RangeIndexBenchmark benchmark = new RangeIndexBenchmark();
+			benchmark.rows = rows;
+			benchmark.setUp();
+			int sink = 0;
+			int repeats = 2000000;
+			for (int round = 0; round < 3; round++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < repeats; i++) {
+					sink += benchmark.indexCount();
+				}
+				if (round == 2) {
+					System.out.printf("%d rows: %.1f ns per count query (%d)%n", rows,
+							(System.nanoTime() - start) / (double) repeats, sink & 1);
+				}
+			}
+		}
+	}
+}
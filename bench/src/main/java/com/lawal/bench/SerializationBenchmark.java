@@ -0,0 +1,212 @@
+package com.lawal.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.AsyncRangeListener;
+import com.lawal.DoublePair;
+import com.lawal.HistogramEngine;
+import com.lawal.PrefetchHandler;
+import com.lawal.Range;
+import com.lawal.RangeIndex;
+import com.lawal.RangeResultCache;
+import com.lawal.RangeSliderBar;
+import com.lawal.SliderConfiguration;
+import com.vaadin.ui.AbstractField;
+
+/**
+ * Serializing and deserializing a slider in its compact form against the
+ * default form it had before, the way session replication does. The default
+ * form is reproduced by {@link DefaultFormSlider}, which has the fields of
+ * the slider, with their declared types, and no writeObject method. Its
+ * value is a {@link BaselinePair}, a copy of the value type the slider
+ * shipped with. Both are written with the same Vaadin superclass state, so
+ * the difference is the slider's own part.
+ *
+ * Run main to print the bytes per slider of both forms, with default and
+ * with customized settings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+	@Param({ "compact", "default" })
+	public String form;
+
+	@Param({ "false", "true" })
+	public boolean customized;
+
+	private Object slider;
+	private byte[] bytes;
+
+	/**
+	 * {@link DoublePair} as the slider shipped with it: boxed public fields
+	 * and default serialization. That class was not Serializable, so a
+	 * slider holding one could not be replicated at all; this copy adds
+	 * only the marker interface.
+	 */
+	@SuppressWarnings("serial")
+	static class BaselinePair implements Serializable {
+		public Double min, max;
+
+		BaselinePair(double min, double max) {
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	/**
+	 * The fields the slider had before it got its compact form, written the
+	 * default way.
+	 */
+	@SuppressWarnings("serial")
+	static class DefaultFormSlider extends AbstractField {
+		private double rangeMin = 0;
+		private double rangeMax = 100;
+		private double stepSize = 1;
+		private int numTicks = 10;
+		private int numLabels = 10;
+		private boolean superImmediateMode = false;
+		private int superImmediateRate = 0;
+		private boolean superImmediateCoalescing = true;
+		private Range range = Range.DEFAULT;
+		private Range fullRange = Range.DEFAULT;
+		private String appendString = "";
+		private int labelDecimals = -1;
+		private String labelPrefix = "";
+		private boolean compactLabels = false;
+		private long suppressedChanges = 0;
+		private boolean deltaPainting = false;
+		private boolean frameRendering = false;
+		private boolean canvasRendering = false;
+		private boolean instrumentationEnabled = false;
+		private Map<String, Long> clientStatistics = Collections.emptyMap();
+		private HistogramEngine histogram;
+		private RangeIndex rangeIndex;
+		private boolean countPreview = false;
+		private String countPreviewFormat = "{0} results";
+		private boolean autoDensity = false;
+		private boolean zoomable = false;
+		private boolean timeAxis = false;
+		private double windowMin = Double.NaN;
+		private double windowMax = Double.NaN;
+		private double[] thumbs;
+		private SliderConfiguration configuration;
+		private boolean configurationMissing = false;
+		private final List<AsyncRangeListener<?>> asyncListeners = new CopyOnWriteArrayList<AsyncRangeListener<?>>();
+		private RangeResultCache<?> resultCache;
+		private PrefetchHandler prefetchHandler;
+		private int prefetchRanges = 4;
+		private int prefetchMillis = 500;
+		private boolean clientInitialized = false;
+		private int dirty = 0;
+
+		DefaultFormSlider(boolean customized) {
+			setSizeFull();
+			if (customized) {
+				rangeMin = 1990;
+				rangeMax = 2030;
+				stepSize = 0.5;
+				appendString = " AD";
+				labelDecimals = 1;
+				superImmediateMode = true;
+				superImmediateRate = 20;
+				range = Range.valueOf(2000, 2010.5);
+			}
+			setValue(new BaselinePair(range.getMin(), range.getMax()));
+		}
+
+		@Override
+		public Class<?> getType() {
+			return BaselinePair.class;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		if ("default".equals(form)) {
+			slider = new DefaultFormSlider(customized);
+		} else {
+			slider = createSlider(customized);
+		}
+		bytes = serialize(slider);
+	}
+
+	private static RangeSliderBar createSlider(boolean customized) {
+		RangeSliderBar slider = new RangeSliderBar();
+		if (customized) {
+			slider.beginBatch().setRange(1990, 2030).setStepSize(0.5).setKnobValues(2000, 2010.5).commit();
+			slider.setAppendString(" AD");
+			slider.setLabelDecimals(1);
+			slider.setSuperImmediateMode(true);
+			slider.setSuperImmediateRate(20);
+		}
+		return slider;
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+		ObjectOutputStream out = new ObjectOutputStream(buffer);
+		out.writeObject(object);
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Benchmark
+	public byte[] serializeSlider() throws IOException {
+		return serialize(slider);
+	}
+
+	@Benchmark
+	public Object deserializeSlider() throws IOException, ClassNotFoundException {
+		return deserialize(bytes);
+	}
+
+	@Benchmark
+	public byte[] serializePair() throws IOException {
+		return serialize(new DoublePair(12.5, 87.5));
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (boolean customized : new boolean[] { false, true }) {
+			int compact = serialize(createSlider(customized)).length;
+			int standard = serialize(new DefaultFormSlider(customized)).length;
+			System.out.printf("%s settings: compact %d bytes, default form %d bytes per slider%n",
+					customized ? "customized" : "default", compact, standard);
+		}
+		System.out.printf("DoublePair: %d bytes, Range: %d bytes%n", serialize(new DoublePair(12.5, 87.5)).length,
+				serialize(Range.valueOf(12.5, 87.5)).length);
+	}
+}
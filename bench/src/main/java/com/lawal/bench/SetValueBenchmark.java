@@ -0,0 +1,73 @@
+package com.lawal.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lawal.DoublePair;
+import com.lawal.Range;
+import com.lawal.RangeSliderBar;
+
+/**
+ * Setting the knob values from server code, through the paths that end in
+ * setVal: a changed value, an unchanged value that is suppressed, a value
+ * clamped to the range and the boxed setValue variants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class SetValueBenchmark {
+
+	private RangeSliderBar slider;
+	private int step;
+
+	@Setup
+	public void setUp() {
+		slider = new RangeSliderBar(0, 1000, 1);
+		step = 0;
+	}
+
+	@Benchmark
+	public RangeSliderBar changed() {
+		step = (step + 1) & 255;
+		slider.setKnobValues(step, 500 + step);
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar unchanged() {
+		slider.setKnobValues(10, 20);
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar clamped() {
+		step = (step + 1) & 255;
+		slider.setKnobValues(-step, 2000 + step);
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar doublePair() {
+		step = (step + 1) & 255;
+		slider.setValue(new DoublePair(step, 500 + step));
+		return slider;
+	}
+
+	@Benchmark
+	public RangeSliderBar range() {
+		step = (step + 1) & 255;
+		slider.setValue(Range.valueOf(step, 500 + step));
+		return slider;
+	}
+}
@@ -0,0 +1,147 @@
+package com.lawal;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.vaadin.Application;
+import com.vaadin.terminal.SystemError;
+
+/**
+ * Runs the asynchronous listeners of one slider. At most one task per slider
+ * is queued on the executor; values arriving while it runs replace each
+ * other, so a drag costs one computation per finished computation rather
+ * than one per move.
+ */
+class AsyncDispatcher implements Runnable {
+
+	private final RangeSliderBar slider;
+	/**
+	 * The executor, the latest range and its generation, guarded by this.
+	 * Replacing the executor keeps the generation, so a task still running
+	 * on the old one can not apply a result older than one computed on the
+	 * new one.
+	 */
+	private Executor executor;
+	private Range latest;
+	private long generation = 0;
+	private boolean scheduled = false;
+	/**
+	 * A bit indicating whether the latest range was taken for computing.
+	 */
+	private boolean taken = false;
+	/**
+	 * The number of ranges replaced before they were computed, or computed
+	 * but not applied because a newer one arrived.
+	 */
+	private long dropped = 0;
+	/**
+	 * The error last shown on the slider for a failed computation.
+	 */
+	private SystemError shownError;
+
+	AsyncDispatcher(RangeSliderBar slider, Executor executor) {
+		this.slider = slider;
+		this.executor = executor;
+	}
+
+	/**
+	 * Makes range the latest value and schedules a task if none is pending.
+	 */
+	synchronized void submit(Range range) {
+		if (scheduled && !taken) {
+			dropped++;
+		}
+		latest = range;
+		taken = false;
+		generation++;
+		if (!scheduled) {
+			scheduled = true;
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				scheduled = false;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Runs the next task on executor. A task already running finishes on
+	 * the old one.
+	 */
+	synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	public void run() {
+		while (true) {
+			Range range;
+			long current;
+			synchronized (this) {
+				range = latest;
+				current = generation;
+				taken = true;
+			}
+			List<AsyncRangeListener<?>> listeners = slider.getAsyncListeners();
+			Object[] results = new Object[listeners.size()];
+			Throwable error = null;
+			for (int i = 0; i < results.length && error == null; i++) {
+				try {
+					results[i] = listeners.get(i).compute(range);
+				} catch (Throwable t) {
+					error = t;
+				}
+			}
+			if (!isStale(current)) {
+				apply(listeners, range, results, error, current);
+			}
+			synchronized (this) {
+				if (generation == current) {
+					scheduled = false;
+					return;
+				}
+			}
+		}
+	}
+
+	private synchronized boolean isStale(long computed) {
+		if (generation != computed) {
+			dropped++;
+			return true;
+		}
+		return false;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void apply(List<AsyncRangeListener<?>> listeners, Range range, Object[] results, Throwable error,
+			long computed) {
+		Application application = slider.getApplication();
+		if (application == null) {
+			// detached while computing
+			return;
+		}
+		synchronized (application) {
+			// a value may have arrived while waiting for the lock
+			if (isStale(computed)) {
+				return;
+			}
+			if (error != null) {
+				shownError = new SystemError(error);
+				slider.setComponentError(shownError);
+				return;
+			}
+			if (shownError != null && slider.getComponentError() == shownError) {
+				slider.setComponentError(null);
+			}
+			shownError = null;
+			for (int i = 0; i < results.length; i++) {
+				((AsyncRangeListener) listeners.get(i)).apply(range, results[i]);
+			}
+		}
+	}
+}
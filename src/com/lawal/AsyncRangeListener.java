@@ -0,0 +1,43 @@
+package com.lawal;
+
+import java.io.Serializable;
+
+/**
+ * A value change listener for slow work, such as backend queries run for
+ * the selected range. {@link #compute(Range)} runs on the executor of the
+ * slider, outside the request that delivered the value, and
+ * {@link #apply(Range, Object)} runs afterwards under the application lock,
+ * where it is safe to change components.
+ *
+ * While compute runs, further values are coalesced: only the latest range is
+ * computed next, and a result is applied only if no newer range arrived in
+ * the meantime.
+ *
+ * @param <T>
+ *            the type of the computed result
+ * @see RangeSliderBar#addAsyncListener(AsyncRangeListener)
+ */
+public interface AsyncRangeListener<T> extends Serializable {
+
+	/**
+	 * Computes the result for a range, without holding the application lock.
+	 * Must not touch components.
+	 *
+	 * @param range
+	 *            the selected range
+	 * @return the result passed to apply
+	 * @throws Exception
+	 *             if computing failed, the error is shown on the slider
+	 */
+	T compute(Range range) throws Exception;
+
+	/**
+	 * Applies a result to the user interface, under the application lock.
+	 *
+	 * @param range
+	 *            the range the result was computed for, still the value of
+	 *            the slider
+	 * @param result
+	 */
+	void apply(Range range, T result);
+}
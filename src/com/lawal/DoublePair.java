@@ -1,6 +1,26 @@
 package com.lawal;
 
-public class DoublePair {
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Boxed knob values of a {@link RangeSliderBar}, the type of its value. The
+ * component keeps the knobs as a {@link Range} and creates the pair returned
+ * by {@link RangeSliderBar#getValue()} only when it is asked for.
+ *
+ * Pairs are externalized as a version byte, a byte marking null values and
+ * the values as primitive doubles, without the boxed Doubles.
+ */
+public class DoublePair implements Externalizable {
+
+	private static final long serialVersionUID = 1L;
+	private static final byte VERSION = 1;
+	private static final int MIN_NULL = 1;
+	private static final int MAX_NULL = 1 << 1;
+
 	@Override
 	public String toString() {
 		return "DoublePair [ min=" + min + ", max=" + max + "]";
@@ -42,5 +62,32 @@ public class DoublePair {
 		this.max = max;
 	}
 
+	/**
+	 * For deserialization, leaves both values null.
+	 */
+	public DoublePair() {
+	}
+
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(VERSION);
+		out.writeByte((min == null ? MIN_NULL : 0) | (max == null ? MAX_NULL : 0));
+		if (min != null) {
+			out.writeDouble(min);
+		}
+		if (max != null) {
+			out.writeDouble(max);
+		}
+	}
+
+	public void readExternal(ObjectInput in) throws IOException {
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new InvalidObjectException("Unsupported DoublePair version " + version);
+		}
+		int nulls = in.readByte();
+		min = (nulls & MIN_NULL) != 0 ? null : Double.valueOf(in.readDouble());
+		max = (nulls & MAX_NULL) != 0 ? null : Double.valueOf(in.readDouble());
+	}
+
 	public Double min, max;
 }
\ No newline at end of file
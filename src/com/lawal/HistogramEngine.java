@@ -0,0 +1,292 @@
+package com.lawal;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Counts values into buckets aligned to the range and step size of a
+ * {@link RangeSliderBar}, so that the slider can show the distribution of
+ * the data behind its track. The bucket width is a whole number of steps,
+ * which puts every bucket edge on a position the knobs can reach.
+ *
+ * Values can be added and removed one at a time or in bulk; the counts are
+ * kept up to date incrementally. After changing the values of a histogram
+ * shown by a slider, call {@link RangeSliderBar#refreshHistogram()} to send
+ * the new counts to the client.
+ *
+ * Like the component, an engine is not thread safe and should be changed
+ * while holding the application lock.
+ *
+ * An engine is serialized with the session as its bucket layout and counts
+ * in primitives, see {@link #writeObject(ObjectOutputStream)}.
+ */
+@SuppressWarnings("serial")
+public class HistogramEngine implements Serializable {
+
+	private static final byte SERIAL_VERSION = 1;
+
+	// not final, as readObject restores them
+	private transient double origin;
+	private transient double end;
+	private transient double bucketWidth;
+	private transient int[] counts;
+	private transient long total = 0;
+	private transient long underflow = 0;
+	private transient long overflow = 0;
+
+	/**
+	 * Creates an empty histogram over [rangeMin, rangeMax].
+	 *
+	 * @param rangeMin
+	 *            the smallest value of the slider
+	 * @param rangeMax
+	 *            the biggest value of the slider
+	 * @param stepSize
+	 *            the step size of the slider, 0 for a continuous slider
+	 * @param maxBuckets
+	 *            the maximum number of buckets
+	 */
+	public HistogramEngine(double rangeMin, double rangeMax, double stepSize, int maxBuckets) {
+		if (!(rangeMax > rangeMin)) {
+			throw new IllegalArgumentException("rangeMax must be bigger than rangeMin");
+		}
+		if (maxBuckets < 1) {
+			throw new IllegalArgumentException("At least one bucket is needed");
+		}
+		double span = rangeMax - rangeMin;
+		double step = stepSize > 0 ? stepSize : span / maxBuckets;
+		long steps = Math.max(1, (long) Math.ceil(span / step));
+		long stepsPerBucket = (steps + maxBuckets - 1) / maxBuckets;
+		this.origin = rangeMin;
+		this.end = rangeMax;
+		this.bucketWidth = step * stepsPerBucket;
+		this.counts = new int[(int) Math.max(1, Math.ceil(span / bucketWidth))];
+	}
+
+	/**
+	 * Creates an empty histogram matching the current range and step size of
+	 * the slider.
+	 *
+	 * @param slider
+	 * @param maxBuckets
+	 *            the maximum number of buckets
+	 * @return the histogram
+	 */
+	public static HistogramEngine forSlider(RangeSliderBar slider, int maxBuckets) {
+		return new HistogramEngine(slider.getRangeMin(), slider.getRangeMax(), slider.getStepSize(), maxBuckets);
+	}
+
+	/**
+	 * Returns the bucket of a value, or -1 if the value is outside the range.
+	 *
+	 * @param value
+	 * @return the bucket index
+	 */
+	public int bucketOf(double value) {
+		if (!(value >= origin && value <= end)) {
+			return -1;
+		}
+		int bucket = (int) ((value - origin) / bucketWidth);
+		// rangeMax itself falls in the last bucket
+		return Math.min(bucket, counts.length - 1);
+	}
+
+	public void add(double value) {
+		int bucket = bucketOf(value);
+		if (bucket >= 0) {
+			counts[bucket]++;
+			total++;
+		} else if (value < origin) {
+			underflow++;
+		} else {
+			overflow++;
+		}
+	}
+
+	public void addAll(double[] values) {
+		addAll(values, 0, values.length);
+	}
+
+	/**
+	 * Adds the values values[from] to values[to - 1].
+	 *
+	 * @param values
+	 * @param from
+	 * @param to
+	 */
+	public void addAll(double[] values, int from, int to) {
+		for (int i = from; i < to; i++) {
+			add(values[i]);
+		}
+	}
+
+	/**
+	 * Adds the values of a collection or any other source that can be
+	 * iterated, such as a query result read row by row, without copying them
+	 * to an array first.
+	 *
+	 * @param values
+	 */
+	public void addAll(Iterable<? extends Number> values) {
+		for (Number value : values) {
+			add(value.doubleValue());
+		}
+	}
+
+	/**
+	 * Removes a value that was added before.
+	 *
+	 * @param value
+	 * @throws IllegalStateException
+	 *             if the bucket of the value, or the count below or above
+	 *             the range it falls in, is already empty
+	 */
+	public void remove(double value) {
+		int bucket = bucketOf(value);
+		if (bucket >= 0) {
+			if (counts[bucket] == 0) {
+				throw new IllegalStateException("No value was added to the bucket of " + value);
+			}
+			counts[bucket]--;
+			total--;
+		} else if (value < origin) {
+			if (underflow == 0) {
+				throw new IllegalStateException("No value below the range was added: " + value);
+			}
+			underflow--;
+		} else {
+			if (overflow == 0) {
+				throw new IllegalStateException("No value above the range was added: " + value);
+			}
+			overflow--;
+		}
+	}
+
+	public void removeAll(double[] values) {
+		for (double value : values) {
+			remove(value);
+		}
+	}
+
+	public void removeAll(Iterable<? extends Number> values) {
+		for (Number value : values) {
+			remove(value.doubleValue());
+		}
+	}
+
+	public void clear() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		total = 0;
+		underflow = 0;
+		overflow = 0;
+	}
+
+	public int getBucketCount() {
+		return counts.length;
+	}
+
+	public double getBucketWidth() {
+		return bucketWidth;
+	}
+
+	/**
+	 * @return the lower edge of the first bucket
+	 */
+	public double getOrigin() {
+		return origin;
+	}
+
+	public int getCount(int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * @return a copy of the bucket counts
+	 */
+	public int[] getCounts() {
+		return counts.clone();
+	}
+
+	/**
+	 * @return the number of values inside the range
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the number of values added below the range
+	 */
+	public long getUnderflow() {
+		return underflow;
+	}
+
+	/**
+	 * @return the number of values added above the range
+	 */
+	public long getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * Writes the bucket layout, the counts and the values outside the range
+	 * behind a version byte. The total is not written, it is the sum of the
+	 * counts.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeByte(SERIAL_VERSION);
+		out.writeDouble(origin);
+		out.writeDouble(end);
+		out.writeDouble(bucketWidth);
+		out.writeLong(underflow);
+		out.writeLong(overflow);
+		out.writeInt(counts.length);
+		for (int count : counts) {
+			out.writeInt(count);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte version = in.readByte();
+		if (version != SERIAL_VERSION) {
+			throw new InvalidObjectException("Unsupported HistogramEngine version " + version);
+		}
+		origin = in.readDouble();
+		end = in.readDouble();
+		bucketWidth = in.readDouble();
+		underflow = in.readLong();
+		overflow = in.readLong();
+		int buckets = in.readInt();
+		if (buckets < 1 || !(bucketWidth > 0)) {
+			throw new InvalidObjectException("Invalid histogram of " + buckets + " buckets of " + bucketWidth);
+		}
+		counts = new int[buckets];
+		total = 0;
+		for (int i = 0; i < buckets; i++) {
+			counts[i] = in.readInt();
+			total += counts[i];
+		}
+	}
+
+	/**
+	 * Returns the counts as a comma separated list, the form in which they
+	 * are painted to the client.
+	 */
+	String encodeCounts() {
+		StringBuilder encoded = new StringBuilder(counts.length * 3);
+		for (int i = 0; i < counts.length; i++) {
+			if (i > 0) {
+				encoded.append(',');
+			}
+			encoded.append(counts[i]);
+		}
+		return encoded.toString();
+	}
+}
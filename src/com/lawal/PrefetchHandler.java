@@ -0,0 +1,32 @@
+package com.lawal;
+
+import java.io.Serializable;
+
+/**
+ * Warms results for ranges a knob is likely to reach while it is dragged, so
+ * that the answer for the range the user releases at is often computed
+ * already. The slider predicts the ranges from the direction and speed the
+ * client reports with each value, nearest first, and calls the handler on
+ * its asynchronous executor.
+ *
+ * Prefetching is speculative: a handler should check
+ * {@link PrefetchToken#isCancelled()} during long work, and exceptions it
+ * throws only end the current batch.
+ *
+ * @see RangeSliderBar#setPrefetchHandler(PrefetchHandler)
+ */
+public interface PrefetchHandler extends Serializable {
+
+	/**
+	 * Warms the results for a predicted range, without holding the
+	 * application lock.
+	 *
+	 * @param range
+	 *            the predicted range, on the step grid of the slider
+	 * @param token
+	 *            cancelled when a newer value arrives, the knob is released
+	 *            or the time budget runs out
+	 * @throws Exception
+	 */
+	void prefetch(Range range, PrefetchToken token) throws Exception;
+}
@@ -0,0 +1,36 @@
+package com.lawal;
+
+/**
+ * The cancellation state of one batch of prefetches.
+ */
+public final class PrefetchToken {
+
+	private final long deadline;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param budgetMillis
+	 *            the time the batch may take
+	 */
+	PrefetchToken(long budgetMillis) {
+		deadline = System.nanoTime() + budgetMillis * 1000000L;
+	}
+
+	/**
+	 * @return true if the batch was superseded or its time budget is spent
+	 */
+	public boolean isCancelled() {
+		return cancelled || getRemainingMillis() <= 0;
+	}
+
+	/**
+	 * @return the time left of the budget of the batch, in milliseconds
+	 */
+	public long getRemainingMillis() {
+		return (deadline - System.nanoTime()) / 1000000L;
+	}
+
+	void cancel() {
+		cancelled = true;
+	}
+}
@@ -0,0 +1,97 @@
+package com.lawal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Predicts the ranges a dragged knob reaches next and runs a
+ * {@link PrefetchHandler} for them on an executor, one batch at a time.
+ */
+class Prefetcher {
+
+	/**
+	 * The time between two predicted positions, in milliseconds.
+	 */
+	static final int SLICE_MILLIS = 100;
+
+	private final PrefetchHandler handler;
+	private PrefetchToken current;
+
+	Prefetcher(PrefetchHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Extrapolates the dragged knob linearly, one position per time slice,
+	 * and returns the distinct ranges on the step grid, nearest first.
+	 *
+	 * @param value
+	 *            the current value
+	 * @param knob
+	 *            0 if the min knob is dragged, 1 if the max knob is
+	 * @param velocity
+	 *            the knob speed in values per second, negative to the left
+	 * @param maxRanges
+	 *            the most ranges to return
+	 */
+	static List<Range> predict(Range value, int knob, double velocity, double rangeMin, double rangeMax,
+			double stepSize, int maxRanges) {
+		List<Range> ranges = new ArrayList<Range>(maxRanges);
+		double start = knob == 0 ? value.getMin() : value.getMax();
+		// the knob can not pass the other one
+		double low = knob == 0 ? rangeMin : value.getMin();
+		double high = knob == 0 ? value.getMax() : rangeMax;
+		// slow drags snap to the same step several times, stop at some point
+		for (int slice = 1; slice <= maxRanges * 4 && ranges.size() < maxRanges; slice++) {
+			double position = start + velocity * slice * SLICE_MILLIS / 1000;
+			if (stepSize > 0) {
+				position = rangeMin + Math.round((position - rangeMin) / stepSize) * stepSize;
+			}
+			position = Math.max(low, Math.min(high, position));
+			Range range = knob == 0 ? Range.valueOf(position, value.getMax()) : Range.valueOf(value.getMin(),
+					position);
+			if (!range.equals(value) && !ranges.contains(range)) {
+				ranges.add(range);
+			}
+			if (position <= low || position >= high) {
+				break;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Cancels the running batch and starts one for the given ranges.
+	 */
+	synchronized void start(final List<Range> ranges, long budgetMillis, Executor executor) {
+		cancel();
+		if (ranges.isEmpty()) {
+			return;
+		}
+		final PrefetchToken token = new PrefetchToken(budgetMillis);
+		current = token;
+		executor.execute(new Runnable() {
+			public void run() {
+				for (Range range : ranges) {
+					if (token.isCancelled()) {
+						return;
+					}
+					try {
+						handler.prefetch(range, token);
+					} catch (Exception e) {
+						// speculative work, the real request computes it anyway
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	synchronized void cancel() {
+		if (current != null) {
+			current.cancel();
+			current = null;
+		}
+	}
+}
@@ -0,0 +1,639 @@
+package com.lawal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.CRC32;
+
+/**
+ * Named {@link SliderPreset}s of many users and sliders, kept in a memory
+ * mapped file. One store is meant to be shared by all sessions of a node,
+ * and is thread safe.
+ *
+ * The file is an append only log. After a 16 byte header every save or
+ * removal is one record:
+ *
+ * <pre>
+ * int    payload length
+ * int    CRC32 of the payload
+ * byte   type, 1 for a save and 2 for a removal
+ * short  length of the user id, followed by its UTF-8 bytes
+ * short  length of the slider id, followed by its UTF-8 bytes
+ * short  length of the preset name, followed by its UTF-8 bytes
+ * double rangeMin, rangeMax, stepSize, knobMin, knobMax (saves only)
+ * </pre>
+ *
+ * A store locks its file, so a file can be open in only one store at a
+ * time, also across processes. All presets are held in an index in memory,
+ * so a lookup never touches the file. Records are collected and copied into
+ * the mapping in batches, each batch followed by one force to disk. A batch
+ * is written when it is full, or at the latest a maximum delay after its
+ * first record, so a crash loses at most the changes of that delay unless
+ * {@link #flush()} was called. On opening, the log is replayed into the
+ * index. A record cut short or damaged by a crash ends the log: it and
+ * everything after it is cleared, and its size is reported by
+ * {@link #getDiscardedBytes()}.
+ *
+ * The log grows with every save; a store whose presets change often should
+ * be rewritten now and then with {@link #compactTo(File)}.
+ */
+public class PresetStore implements Closeable {
+
+	private static final int MAGIC = 0x52535053;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final byte TYPE_SAVE = 1;
+	private static final byte TYPE_REMOVE = 2;
+	private static final int MAX_STRING_BYTES = 0xFFFF;
+	private static final int MAX_PAYLOAD = 1 + 3 * (2 + MAX_STRING_BYTES) + 5 * 8;
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+	/**
+	 * The records per batch of the two argument constructor.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	/**
+	 * The longest time in milliseconds a record waits for its batch, unless
+	 * given to the constructor.
+	 */
+	public static final long DEFAULT_MAX_DELAY = 1000;
+
+	/**
+	 * Writes the batches that waited for their maximum delay, shared by all
+	 * stores.
+	 */
+	private static Timer flushTimer;
+
+	/**
+	 * The user and slider a preset belongs to.
+	 */
+	private static final class Owner {
+		final String user;
+		final String sliderId;
+
+		Owner(String user, String sliderId) {
+			this.user = user;
+			this.sliderId = sliderId;
+		}
+
+		@Override
+		public int hashCode() {
+			return user.hashCode() * 31 + sliderId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Owner)) {
+				return false;
+			}
+			Owner other = (Owner) obj;
+			return user.equals(other.user) && sliderId.equals(other.sliderId);
+		}
+	}
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private final int batchSize;
+	private final long maxDelay;
+	/**
+	 * Writes the pending batch when its delay is over, null if none is
+	 * pending.
+	 */
+	private TimerTask flushTask;
+	private MappedByteBuffer mapped;
+	/**
+	 * The end of the last record in the file, where the next batch goes.
+	 */
+	private int end;
+	private final Map<Owner, Map<String, SliderPreset>> index = new HashMap<Owner, Map<String, SliderPreset>>();
+	private int size = 0;
+	private ByteBuffer pending = ByteBuffer.allocate(4096);
+	private int pendingRecords = 0;
+	private final CRC32 crc = new CRC32();
+	private long discardedBytes = 0;
+	private boolean closed = false;
+
+	/**
+	 * Opens a store with the default batch size and delay, creating the file
+	 * if it does not exist.
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             if the file can not be mapped, is not a preset store or is
+	 *             open in another store
+	 */
+	public PresetStore(File file) throws IOException {
+		this(file, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * Opens a store with the default delay.
+	 *
+	 * @param file
+	 * @param batchSize
+	 *            the records collected before they are written, 1 writes
+	 *            every record at once
+	 * @throws IOException
+	 *             if the file can not be mapped, is not a preset store or is
+	 *             open in another store
+	 */
+	public PresetStore(File file, int batchSize) throws IOException {
+		this(file, batchSize, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * @param file
+	 * @param batchSize
+	 *            the records collected before they are written, 1 writes
+	 *            every record at once
+	 * @param maxDelay
+	 *            the longest time in milliseconds a record waits for its
+	 *            batch to fill, 0 writes every record at once
+	 * @throws IOException
+	 *             if the file can not be mapped, is not a preset store or is
+	 *             open in another store
+	 */
+	public PresetStore(File file, int batchSize, long maxDelay) throws IOException {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1");
+		}
+		if (maxDelay < 0) {
+			throw new IllegalArgumentException("maxDelay must not be negative");
+		}
+		this.file = file;
+		this.batchSize = batchSize;
+		this.maxDelay = maxDelay;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
+		boolean opened = false;
+		try {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				// locked by a store in this virtual machine
+				lock = null;
+			}
+			if (lock == null) {
+				throw new IOException("The preset store is open elsewhere: " + file);
+			}
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Preset store too big to map: " + file);
+			}
+			if (length == 0) {
+				mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_CAPACITY);
+				mapped.putInt(0, MAGIC);
+				mapped.putInt(4, VERSION);
+				mapped.force();
+				end = HEADER_SIZE;
+			} else {
+				mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+				if (length < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+					throw new IOException("Not a preset store: " + file);
+				}
+				if (mapped.getInt(4) != VERSION) {
+					throw new IOException("Unsupported preset store version " + mapped.getInt(4) + ": " + file);
+				}
+				recover();
+			}
+			opened = true;
+		} finally {
+			if (!opened) {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Replays the log into the index, and clears the log from the first
+	 * record that is cut short or damaged.
+	 */
+	private void recover() {
+		int position = HEADER_SIZE;
+		int capacity = mapped.capacity();
+		while (position + RECORD_HEADER_SIZE <= capacity) {
+			int length = mapped.getInt(position);
+			if (length == 0) {
+				// the zeroed space after the last record
+				break;
+			}
+			if (length < 0 || length > MAX_PAYLOAD || position + RECORD_HEADER_SIZE + length > capacity
+					|| !replay(position + RECORD_HEADER_SIZE, length, mapped.getInt(position + 4))) {
+				discardedBytes = clear(position);
+				break;
+			}
+			position += RECORD_HEADER_SIZE + length;
+		}
+		end = position;
+	}
+
+	/**
+	 * Applies one record to the index.
+	 *
+	 * @return false if the record is damaged
+	 */
+	private boolean replay(int offset, int length, int checksum) {
+		ByteBuffer payload = mapped.duplicate();
+		payload.position(offset);
+		payload.limit(offset + length);
+		byte[] bytes = new byte[length];
+		payload.get(bytes);
+		crc.reset();
+		crc.update(bytes, 0, length);
+		if ((int) crc.getValue() != checksum) {
+			return false;
+		}
+		ByteBuffer record = ByteBuffer.wrap(bytes);
+		try {
+			byte type = record.get();
+			Owner owner = new Owner(readString(record), readString(record));
+			String name = readString(record);
+			if (type == TYPE_SAVE) {
+				SliderPreset preset = new SliderPreset(record.getDouble(), record.getDouble(), record.getDouble(),
+						record.getDouble(), record.getDouble());
+				index(owner, name, preset);
+			} else if (type == TYPE_REMOVE) {
+				unindex(owner, name);
+			} else {
+				return false;
+			}
+			return !record.hasRemaining();
+		} catch (RuntimeException e) {
+			// a length running past the record, or an invalid preset
+			return false;
+		}
+	}
+
+	/**
+	 * Zeroes the file from a position on, so that the log ends there.
+	 *
+	 * @return the number of bytes that were not zero
+	 */
+	private long clear(int position) {
+		long cleared = 0;
+		for (int i = position; i < mapped.capacity(); i++) {
+			if (mapped.get(i) != 0) {
+				mapped.put(i, (byte) 0);
+				cleared = i - position + 1;
+			}
+		}
+		mapped.force();
+		return cleared;
+	}
+
+	/**
+	 * Saves the current state of a slider as a preset, replacing a preset of
+	 * the same name.
+	 *
+	 * @param user
+	 * @param sliderId
+	 * @param name
+	 * @param slider
+	 * @return the saved preset
+	 * @throws IOException
+	 *             if the batch this completes can not be written
+	 */
+	public SliderPreset save(String user, String sliderId, String name, RangeSliderBar slider) throws IOException {
+		SliderPreset preset = SliderPreset.fromSlider(slider);
+		put(user, sliderId, name, preset);
+		return preset;
+	}
+
+	/**
+	 * Stores a preset, replacing a preset of the same name.
+	 *
+	 * @param user
+	 * @param sliderId
+	 * @param name
+	 * @param preset
+	 * @throws IOException
+	 *             if the batch this completes can not be written
+	 */
+	public synchronized void put(String user, String sliderId, String name, SliderPreset preset)
+			throws IOException {
+		checkOpen();
+		Owner owner = new Owner(user, sliderId);
+		append(TYPE_SAVE, owner, name, preset);
+		index(owner, name, preset);
+	}
+
+	/**
+	 * @param user
+	 * @param sliderId
+	 * @param name
+	 * @return the preset, or null if there is none of that name
+	 */
+	public synchronized SliderPreset get(String user, String sliderId, String name) {
+		Map<String, SliderPreset> presets = index.get(new Owner(user, sliderId));
+		return presets == null ? null : presets.get(name);
+	}
+
+	/**
+	 * Applies a preset to a slider: one lookup in the index and one batch
+	 * update of the slider.
+	 *
+	 * @param user
+	 * @param sliderId
+	 * @param name
+	 * @param slider
+	 * @return false if there is no preset of that name
+	 */
+	public boolean applyPreset(String user, String sliderId, String name, RangeSliderBar slider) {
+		SliderPreset preset = get(user, sliderId, name);
+		if (preset == null) {
+			return false;
+		}
+		preset.applyTo(slider);
+		return true;
+	}
+
+	/**
+	 * @param user
+	 * @param sliderId
+	 * @return the names of the presets of a slider, in no particular order
+	 */
+	public synchronized List<String> getNames(String user, String sliderId) {
+		Map<String, SliderPreset> presets = index.get(new Owner(user, sliderId));
+		if (presets == null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<String>(presets.keySet());
+	}
+
+	/**
+	 * Removes a preset.
+	 *
+	 * @param user
+	 * @param sliderId
+	 * @param name
+	 * @return false if there was no preset of that name
+	 * @throws IOException
+	 *             if the batch this completes can not be written
+	 */
+	public synchronized boolean remove(String user, String sliderId, String name) throws IOException {
+		checkOpen();
+		if (get(user, sliderId, name) == null) {
+			return false;
+		}
+		Owner owner = new Owner(user, sliderId);
+		append(TYPE_REMOVE, owner, name, null);
+		unindex(owner, name);
+		return true;
+	}
+
+	/**
+	 * @return the number of presets
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the bytes of damaged records cleared when the store was opened
+	 */
+	public synchronized long getDiscardedBytes() {
+		return discardedBytes;
+	}
+
+	/**
+	 * Writes the records collected so far and forces them to disk. If that
+	 * fails, the records stay collected and the log is left as it was.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		checkOpen();
+		if (pendingRecords == 0) {
+			return;
+		}
+		int length = pending.position();
+		ensureCapacity(end + length);
+		ByteBuffer target = mapped.duplicate();
+		target.position(end);
+		target.put(pending.array(), 0, length);
+		try {
+			mapped.force();
+		} catch (RuntimeException e) {
+			// force reports a failed write unchecked; zero the batch so the
+			// log ends before it
+			for (int i = end; i < end + length; i++) {
+				mapped.put(i, (byte) 0);
+			}
+			throw new IOException("The preset store could not be written: " + file, e);
+		}
+		pending.clear();
+		pendingRecords = 0;
+		end += length;
+		if (flushTask != null) {
+			flushTask.cancel();
+			flushTask = null;
+		}
+	}
+
+	/**
+	 * Writes the current presets, without the history of the log, to a new
+	 * store file. Close this store and move the new file in its place to use
+	 * it.
+	 *
+	 * @param target
+	 *            the new file, which must not exist or be empty
+	 * @throws IOException
+	 */
+	public synchronized void compactTo(File target) throws IOException {
+		checkOpen();
+		if (target.length() > 0) {
+			throw new IOException("The target of compaction must be empty: " + target);
+		}
+		PresetStore compacted = new PresetStore(target, Integer.MAX_VALUE);
+		try {
+			for (Map.Entry<Owner, Map<String, SliderPreset>> owner : index.entrySet()) {
+				for (Map.Entry<String, SliderPreset> preset : owner.getValue().entrySet()) {
+					compacted.put(owner.getKey().user, owner.getKey().sliderId, preset.getKey(), preset.getValue());
+				}
+			}
+		} finally {
+			compacted.close();
+		}
+	}
+
+	/**
+	 * Writes the collected records and closes the file.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			if (flushTask != null) {
+				flushTask.cancel();
+				flushTask = null;
+			}
+			randomAccessFile.close();
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("The preset store is closed");
+		}
+	}
+
+	private void append(byte type, Owner owner, String name, SliderPreset preset) throws IOException {
+		byte[] user = encode(owner.user);
+		byte[] sliderId = encode(owner.sliderId);
+		byte[] presetName = encode(name);
+		int length = 1 + 6 + user.length + sliderId.length + presetName.length + (preset != null ? 5 * 8 : 0);
+		if (pending.remaining() < RECORD_HEADER_SIZE + length) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position()
+					+ RECORD_HEADER_SIZE + length));
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		int start = pending.position();
+		pending.putInt(length);
+		pending.putInt(0);
+		pending.put(type);
+		pending.putShort((short) user.length).put(user);
+		pending.putShort((short) sliderId.length).put(sliderId);
+		pending.putShort((short) presetName.length).put(presetName);
+		if (preset != null) {
+			pending.putDouble(preset.getRangeMin());
+			pending.putDouble(preset.getRangeMax());
+			pending.putDouble(preset.getStepSize());
+			pending.putDouble(preset.getKnobMin());
+			pending.putDouble(preset.getKnobMax());
+		}
+		crc.reset();
+		crc.update(pending.array(), start + RECORD_HEADER_SIZE, length);
+		pending.putInt(start + 4, (int) crc.getValue());
+		if (++pendingRecords >= batchSize || maxDelay == 0) {
+			try {
+				flush();
+			} catch (IOException e) {
+				// the caller is told the change failed, so it must not be
+				// written with a later batch either
+				pending.position(start);
+				pendingRecords--;
+				throw e;
+			}
+		} else if (flushTask == null) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Writes the pending batch after the maximum delay. If that fails, the
+	 * batch is tried again after another delay.
+	 */
+	private void scheduleFlush() {
+		flushTask = new TimerTask() {
+			@Override
+			public void run() {
+				synchronized (PresetStore.this) {
+					if (flushTask != this || closed) {
+						return;
+					}
+					flushTask = null;
+					try {
+						flush();
+					} catch (IOException e) {
+						scheduleFlush();
+					}
+				}
+			}
+		};
+		synchronized (PresetStore.class) {
+			if (flushTimer == null) {
+				flushTimer = new Timer("PresetStore-flush", true);
+			}
+			flushTimer.schedule(flushTask, maxDelay);
+		}
+	}
+
+	/**
+	 * Maps a bigger part of the file if the log would not fit.
+	 */
+	private void ensureCapacity(int needed) throws IOException {
+		if (needed < 0) {
+			throw new IOException("The preset store is full: " + file);
+		}
+		if (needed <= mapped.capacity()) {
+			return;
+		}
+		long capacity = mapped.capacity();
+		while (capacity < needed) {
+			capacity *= 2;
+		}
+		mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, Integer.MAX_VALUE));
+	}
+
+	private void index(Owner owner, String name, SliderPreset preset) {
+		Map<String, SliderPreset> presets = index.get(owner);
+		if (presets == null) {
+			presets = new HashMap<String, SliderPreset>();
+			index.put(owner, presets);
+		}
+		if (presets.put(name, preset) == null) {
+			size++;
+		}
+	}
+
+	private boolean unindex(Owner owner, String name) {
+		Map<String, SliderPreset> presets = index.get(owner);
+		if (presets == null || presets.remove(name) == null) {
+			return false;
+		}
+		if (presets.isEmpty()) {
+			index.remove(owner);
+		}
+		size--;
+		return true;
+	}
+
+	private static byte[] encode(String value) {
+		try {
+			byte[] bytes = value.getBytes("UTF-8");
+			if (bytes.length > MAX_STRING_BYTES) {
+				throw new IllegalArgumentException("Ids and names must not be longer than " + MAX_STRING_BYTES
+						+ " bytes");
+			}
+			return bytes;
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String readString(ByteBuffer record) {
+		byte[] bytes = new byte[record.getShort() & 0xFFFF];
+		record.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
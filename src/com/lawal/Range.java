@@ -0,0 +1,179 @@
+package com.lawal;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+
+/**
+ * An immutable pair of knob values held as primitive doubles. Instances are
+ * obtained through {@link #valueOf(double, double)}, which hands out shared
+ * instances for the common values instead of allocating.
+ */
+@SuppressWarnings("serial")
+public final class Range implements Serializable {
+
+	/**
+	 * The empty range [0, 0].
+	 */
+	public static final Range EMPTY = new Range(0, 0);
+
+	/**
+	 * The full range of a slider with default bounds, [0, 100].
+	 */
+	public static final Range DEFAULT = new Range(0, 100);
+
+	private final double min;
+	private final double max;
+
+	private Range(double min, double max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Returns a range for the given values, reusing a cached instance where
+	 * one exists.
+	 *
+	 * @param min
+	 * @param max
+	 * @return the range [min, max]
+	 */
+	public static Range valueOf(double min, double max) {
+		if (EMPTY.matches(min, max)) {
+			return EMPTY;
+		}
+		if (DEFAULT.matches(min, max)) {
+			return DEFAULT;
+		}
+		return new Range(min, max);
+	}
+
+	/**
+	 * Returns a range holding the values of the given pair.
+	 *
+	 * @param pair
+	 * @return the range [pair.min, pair.max]
+	 */
+	public static Range valueOf(DoublePair pair) {
+		return valueOf(pair.min, pair.max);
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return true if min and max are the same value
+	 */
+	public boolean isEmpty() {
+		return Double.compare(min, max) == 0;
+	}
+
+	/**
+	 * Tests whether this range holds the given values, using the same
+	 * semantics as {@link #equals(Object)} but without allocating.
+	 *
+	 * @param min
+	 * @param max
+	 * @return true if this range is [min, max]
+	 */
+	public boolean matches(double min, double max) {
+		return Double.doubleToLongBits(this.min) == Double.doubleToLongBits(min)
+				&& Double.doubleToLongBits(this.max) == Double.doubleToLongBits(max);
+	}
+
+	/**
+	 * Creates a new {@link DoublePair} holding the values of this range, for
+	 * callers that still work with the boxed type.
+	 *
+	 * @return a new DoublePair
+	 */
+	public DoublePair toDoublePair() {
+		return new DoublePair(min, max);
+	}
+
+	@Override
+	public String toString() {
+		return "Range [ min=" + min + ", max=" + max + "]";
+	}
+
+	/**
+	 * Ranges are written as a {@link Serialized} proxy, which carries no field
+	 * descriptors and reads back as the shared instances where they apply.
+	 */
+	private Object writeReplace() {
+		return new Serialized(this);
+	}
+
+	/**
+	 * The serialized form of a range: a version byte and the two doubles.
+	 */
+	private static final class Serialized implements Externalizable {
+
+		private static final long serialVersionUID = 1L;
+		private static final byte VERSION = 1;
+
+		private double min;
+		private double max;
+
+		/**
+		 * For deserialization.
+		 */
+		public Serialized() {
+		}
+
+		Serialized(Range range) {
+			this.min = range.min;
+			this.max = range.max;
+		}
+
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeByte(VERSION);
+			out.writeDouble(min);
+			out.writeDouble(max);
+		}
+
+		public void readExternal(ObjectInput in) throws IOException {
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new InvalidObjectException("Unsupported Range version " + version);
+			}
+			min = in.readDouble();
+			max = in.readDouble();
+		}
+
+		private Object readResolve() {
+			return valueOf(min, max);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		long bits = Double.doubleToLongBits(max);
+		result = prime * result + (int) (bits ^ (bits >>> 32));
+		bits = Double.doubleToLongBits(min);
+		result = prime * result + (int) (bits ^ (bits >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Range other = (Range) obj;
+		return matches(other.min, other.max);
+	}
+}
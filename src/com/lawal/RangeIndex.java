@@ -0,0 +1,429 @@
+package com.lawal;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A sorted index of primitive keys with a row id per key, for filtering data
+ * by the range selected on a {@link RangeSliderBar}. Count and id queries
+ * for [min, max] are answered by binary search in O(log n), instead of every
+ * value change listener scanning its data.
+ *
+ * Keys are added to a pending batch and merged into the sorted arrays on the
+ * next query, or on {@link #flush()}, so that loading many rows costs one
+ * sort of the batch plus one linear merge.
+ *
+ * An index is not thread safe. It is serialized as its rows only, without
+ * the spare capacity of its arrays.
+ */
+@SuppressWarnings("serial")
+public class RangeIndex implements Serializable {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	/**
+	 * The largest pending batch whose arrays are kept for the next one. A
+	 * bigger batch is a bulk load, and its arrays are released once merged.
+	 */
+	private static final int MAX_RETAINED_PENDING = 1024;
+	private static final byte SERIAL_VERSION = 1;
+
+	private transient double[] keys;
+	private transient int[] ids;
+	private transient int size = 0;
+
+	private transient double[] pendingKeys;
+	private transient int[] pendingIds;
+	private transient int pendingSize = 0;
+
+	public RangeIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity
+	 *            the number of rows to reserve room for
+	 */
+	public RangeIndex(int initialCapacity) {
+		keys = new double[Math.max(1, initialCapacity)];
+		ids = new int[keys.length];
+		pendingKeys = new double[DEFAULT_CAPACITY];
+		pendingIds = new int[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Adds a row. The row becomes visible to queries once the pending batch
+	 * is merged.
+	 *
+	 * @param key
+	 *            the value the row is filtered on
+	 * @param id
+	 *            the row id
+	 */
+	public void add(double key, int id) {
+		checkKey(key);
+		ensurePendingCapacity(pendingSize + 1);
+		pendingKeys[pendingSize] = key;
+		pendingIds[pendingSize] = id;
+		pendingSize++;
+	}
+
+	/**
+	 * Adds a batch of rows, keys[i] belonging to ids[i].
+	 *
+	 * @param keys
+	 * @param ids
+	 */
+	public void addAll(double[] keys, int[] ids) {
+		if (keys.length != ids.length) {
+			throw new IllegalArgumentException("keys and ids must have the same length");
+		}
+		for (double key : keys) {
+			checkKey(key);
+		}
+		ensurePendingCapacity(pendingSize + keys.length);
+		System.arraycopy(keys, 0, pendingKeys, pendingSize, keys.length);
+		System.arraycopy(ids, 0, pendingIds, pendingSize, ids.length);
+		pendingSize += keys.length;
+	}
+
+	/**
+	 * Merges the pending rows into the index.
+	 */
+	public void flush() {
+		if (pendingSize == 0) {
+			return;
+		}
+		sort(pendingKeys, pendingIds, pendingSize);
+		int merged = size + pendingSize;
+		if (merged > keys.length) {
+			int capacity = Math.max(merged, keys.length + (keys.length >> 1));
+			double[] newKeys = new double[capacity];
+			int[] newIds = new int[capacity];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(ids, 0, newIds, 0, size);
+			keys = newKeys;
+			ids = newIds;
+		}
+		// merge from the back so that no second array is needed, rows
+		// already in the index stay first among equal keys
+		int i = size - 1;
+		int j = pendingSize - 1;
+		int k = merged - 1;
+		while (j >= 0) {
+			if (i >= 0 && keys[i] > pendingKeys[j]) {
+				keys[k] = keys[i];
+				ids[k--] = ids[i--];
+			} else {
+				keys[k] = pendingKeys[j];
+				ids[k--] = pendingIds[j--];
+			}
+		}
+		size = merged;
+		pendingSize = 0;
+		releasePending();
+	}
+
+	public void clear() {
+		size = 0;
+		pendingSize = 0;
+		releasePending();
+	}
+
+	/**
+	 * @return the number of rows, including pending ones
+	 */
+	public int size() {
+		return size + pendingSize;
+	}
+
+	/**
+	 * Returns the position of the first row with a key of at least min.
+	 *
+	 * @param min
+	 * @return a position between 0 and size()
+	 */
+	public int lowerBound(double min) {
+		flush();
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < min) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the position after the last row with a key of at most max.
+	 *
+	 * @param max
+	 * @return a position between 0 and size()
+	 */
+	public int upperBound(double max) {
+		flush();
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] <= max) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param min
+	 * @param max
+	 * @return the number of rows with a key in [min, max]
+	 */
+	public int count(double min, double max) {
+		if (max < min) {
+			return 0;
+		}
+		return upperBound(max) - lowerBound(min);
+	}
+
+	public int count(Range range) {
+		return count(range.getMin(), range.getMax());
+	}
+
+	/**
+	 * @param min
+	 * @param max
+	 * @return the ids of the rows with a key in [min, max], in key order
+	 */
+	public int[] ids(double min, double max) {
+		int[] result = new int[count(min, max)];
+		copyIds(min, max, result, 0);
+		return result;
+	}
+
+	public int[] ids(Range range) {
+		return ids(range.getMin(), range.getMax());
+	}
+
+	/**
+	 * Copies the ids of the rows with a key in [min, max] into dest, so that
+	 * repeated queries can reuse one array.
+	 *
+	 * @param min
+	 * @param max
+	 * @param dest
+	 * @param offset
+	 *            where in dest to start writing
+	 * @return the number of ids copied
+	 */
+	public int copyIds(double min, double max, int[] dest, int offset) {
+		if (max < min) {
+			return 0;
+		}
+		int from = lowerBound(min);
+		int length = upperBound(max) - from;
+		System.arraycopy(ids, from, dest, offset, length);
+		return length;
+	}
+
+	/**
+	 * @param position
+	 *            a position between 0 and size() - 1
+	 * @return the key at that position in key order
+	 */
+	public double getKey(int position) {
+		flush();
+		checkPosition(position);
+		return keys[position];
+	}
+
+	/**
+	 * @param position
+	 *            a position between 0 and size() - 1
+	 * @return the id at that position in key order
+	 */
+	public int getId(int position) {
+		flush();
+		checkPosition(position);
+		return ids[position];
+	}
+
+	/**
+	 * Encodes the cumulative counts at points on a grid, the form in which a
+	 * slider paints them for the count preview. For each point the number of
+	 * rows with a smaller key and the number of rows with a key of at most
+	 * the point are written, so that the count in [min, max] for points min
+	 * and max is a difference of two entries. Entries are written as
+	 * differences to the previous entry in base 36, separated by commas, with
+	 * 0 written as nothing.
+	 * 
+	 * @param origin
+	 *            the first point
+	 * @param spacing
+	 *            the distance between points
+	 * @param end
+	 *            the last point, at most spacing after the one before it
+	 * @param points
+	 *            the number of points
+	 */
+	String encodeCumulativeCounts(double origin, double spacing, double end, int points) {
+		StringBuilder encoded = new StringBuilder(points * 4);
+		int previous = 0;
+		for (int i = 0; i < points; i++) {
+			double point = i == points - 1 ? end : origin + i * spacing;
+			int below = lowerBound(point);
+			int atMost = upperBound(point);
+			if (i > 0) {
+				encoded.append(',');
+			}
+			if (below != previous) {
+				encoded.append(Integer.toString(below - previous, 36));
+			}
+			encoded.append(',');
+			if (atMost != below) {
+				encoded.append(Integer.toString(atMost - below, 36));
+			}
+			previous = atMost;
+		}
+		return encoded.toString();
+	}
+
+	/**
+	 * Writes the merged rows and the pending rows behind a version byte, each
+	 * as a count followed by the keys and the ids.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeByte(SERIAL_VERSION);
+		writeRows(out, keys, ids, size);
+		writeRows(out, pendingKeys, pendingIds, pendingSize);
+	}
+
+	private static void writeRows(ObjectOutputStream out, double[] keys, int[] ids, int length) throws IOException {
+		out.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			out.writeDouble(keys[i]);
+		}
+		for (int i = 0; i < length; i++) {
+			out.writeInt(ids[i]);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte version = in.readByte();
+		if (version != SERIAL_VERSION) {
+			throw new InvalidObjectException("Unsupported RangeIndex version " + version);
+		}
+		size = readLength(in);
+		keys = new double[Math.max(1, size)];
+		ids = new int[keys.length];
+		readRows(in, keys, ids, size);
+		pendingSize = readLength(in);
+		pendingKeys = new double[Math.max(DEFAULT_CAPACITY, pendingSize)];
+		pendingIds = new int[pendingKeys.length];
+		readRows(in, pendingKeys, pendingIds, pendingSize);
+	}
+
+	private static int readLength(ObjectInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new InvalidObjectException("Negative row count " + length);
+		}
+		return length;
+	}
+
+	private static void readRows(ObjectInputStream in, double[] keys, int[] ids, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			keys[i] = in.readDouble();
+		}
+		for (int i = 0; i < length; i++) {
+			ids[i] = in.readInt();
+		}
+	}
+
+	private void checkPosition(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " of " + size);
+		}
+	}
+
+	private static void checkKey(double key) {
+		if (Double.isNaN(key)) {
+			throw new IllegalArgumentException("NaN can not be indexed");
+		}
+	}
+
+	private void releasePending() {
+		if (pendingKeys.length > MAX_RETAINED_PENDING) {
+			pendingKeys = new double[DEFAULT_CAPACITY];
+			pendingIds = new int[DEFAULT_CAPACITY];
+		}
+	}
+
+	private void ensurePendingCapacity(int capacity) {
+		if (capacity <= pendingKeys.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, pendingKeys.length + (pendingKeys.length >> 1));
+		double[] newKeys = new double[newCapacity];
+		int[] newIds = new int[newCapacity];
+		System.arraycopy(pendingKeys, 0, newKeys, 0, pendingSize);
+		System.arraycopy(pendingIds, 0, newIds, 0, pendingSize);
+		pendingKeys = newKeys;
+		pendingIds = newIds;
+	}
+
+	/**
+	 * Sorts the first length keys, and the ids with them, with a stable
+	 * bottom up merge sort.
+	 */
+	private static void sort(double[] keys, int[] ids, int length) {
+		double[] keyBuffer = new double[length];
+		int[] idBuffer = new int[length];
+		double[] fromKeys = keys;
+		int[] fromIds = ids;
+		double[] toKeys = keyBuffer;
+		int[] toIds = idBuffer;
+		for (int width = 1; width < length; width <<= 1) {
+			for (int low = 0; low < length; low += width << 1) {
+				int mid = Math.min(low + width, length);
+				int high = Math.min(low + (width << 1), length);
+				int i = low;
+				int j = mid;
+				int k = low;
+				while (i < mid && j < high) {
+					if (fromKeys[i] <= fromKeys[j]) {
+						toKeys[k] = fromKeys[i];
+						toIds[k++] = fromIds[i++];
+					} else {
+						toKeys[k] = fromKeys[j];
+						toIds[k++] = fromIds[j++];
+					}
+				}
+				System.arraycopy(fromKeys, i, toKeys, k, mid - i);
+				System.arraycopy(fromIds, i, toIds, k, mid - i);
+				k += mid - i;
+				System.arraycopy(fromKeys, j, toKeys, k, high - j);
+				System.arraycopy(fromIds, j, toIds, k, high - j);
+			}
+			double[] swapKeys = fromKeys;
+			fromKeys = toKeys;
+			toKeys = swapKeys;
+			int[] swapIds = fromIds;
+			fromIds = toIds;
+			toIds = swapIds;
+		}
+		if (fromKeys != keys) {
+			System.arraycopy(fromKeys, 0, keys, 0, length);
+			System.arraycopy(fromIds, 0, ids, 0, length);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package com.lawal;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of results computed for the ranges of a {@link RangeSliderBar}.
+ * Knob positions snap to the step size, so users select the same ranges
+ * over and over; with the cache a repeated range costs a map lookup instead
+ * of the computation.
+ *
+ * Keys are the step indices of min and max, so values that differ only by
+ * floating point noise share an entry. Entries are evicted least recently
+ * used first once the cache is full, and after the time to live if one is
+ * set. A cache bound with {@link RangeSliderBar#setResultCache} is cleared
+ * when the range or the step size of the slider changes.
+ *
+ * Caches are thread safe, so they can be used from asynchronous listeners.
+ * The entries are not serialized with the session; a cache is written as
+ * its settings, step grid and statistics in primitives.
+ *
+ * @param <V>
+ *            the type of the cached results
+ */
+@SuppressWarnings("serial")
+public class RangeResultCache<V> implements Serializable {
+
+	/**
+	 * Computes the result for a range on a cache miss.
+	 */
+	public interface Loader<V> {
+		V load(Range range);
+	}
+
+	/**
+	 * The step indices of a range.
+	 */
+	private static final class Key {
+		final long min;
+		final long max;
+
+		Key(long min, long max) {
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public int hashCode() {
+			long bits = min * 31 + max;
+			return (int) (bits ^ (bits >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return min == other.min && max == other.max;
+		}
+	}
+
+	private static final class CachedValue<V> {
+		final V value;
+		final long created;
+
+		CachedValue(V value, long created) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+
+	private static final byte SERIAL_VERSION = 1;
+
+	// not final, as readObject restores them
+	private transient int maxSize;
+	private transient long timeToLive;
+	private transient double origin = 0;
+	private transient double stepSize = 0;
+	private transient LinkedHashMap<Key, CachedValue<V>> entries;
+	private transient long hits = 0;
+	private transient long misses = 0;
+	private transient long evictions = 0;
+	private transient long invalidations = 0;
+
+	/**
+	 * Creates a cache without a time to live.
+	 *
+	 * @param maxSize
+	 *            the most entries kept
+	 */
+	public RangeResultCache(int maxSize) {
+		this(maxSize, 0);
+	}
+
+	/**
+	 * @param maxSize
+	 *            the most entries kept
+	 * @param timeToLiveMillis
+	 *            the time after which an entry is evicted, 0 to keep entries
+	 *            until they are pushed out
+	 */
+	public RangeResultCache(int maxSize, long timeToLiveMillis) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		if (timeToLiveMillis < 0) {
+			throw new IllegalArgumentException("timeToLiveMillis must not be negative");
+		}
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLiveMillis * 1000000L;
+		createEntries();
+	}
+
+	private void createEntries() {
+		entries = new LinkedHashMap<Key, CachedValue<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedValue<V>> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeByte(SERIAL_VERSION);
+		out.writeInt(maxSize);
+		out.writeLong(timeToLive);
+		out.writeDouble(origin);
+		out.writeDouble(stepSize);
+		out.writeLong(hits);
+		out.writeLong(misses);
+		out.writeLong(evictions);
+		out.writeLong(invalidations);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte version = in.readByte();
+		if (version != SERIAL_VERSION) {
+			throw new InvalidObjectException("Unsupported RangeResultCache version " + version);
+		}
+		maxSize = in.readInt();
+		timeToLive = in.readLong();
+		if (maxSize < 1 || timeToLive < 0) {
+			throw new InvalidObjectException("Invalid cache of " + maxSize + " entries");
+		}
+		origin = in.readDouble();
+		stepSize = in.readDouble();
+		hits = in.readLong();
+		misses = in.readLong();
+		evictions = in.readLong();
+		invalidations = in.readLong();
+		createEntries();
+	}
+
+	/**
+	 * Returns the cached result for a range.
+	 *
+	 * @param range
+	 * @return the result, or null on a miss
+	 */
+	public synchronized V get(Range range) {
+		Key key = keyOf(range);
+		CachedValue<V> entry = entries.get(key);
+		if (entry != null && isExpired(entry, System.nanoTime())) {
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Returns the cached result for a range, loading and caching it on a
+	 * miss. The loader runs without holding the lock of the cache, so two
+	 * threads missing the same range may both load it.
+	 *
+	 * @param range
+	 * @param loader
+	 * @return the result
+	 */
+	public V get(Range range, Loader<V> loader) {
+		V value = get(range);
+		if (value == null) {
+			value = loader.load(range);
+			if (value != null) {
+				put(range, value);
+			}
+		}
+		return value;
+	}
+
+	public synchronized void put(Range range, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null can not be cached");
+		}
+		entries.put(keyOf(range), new CachedValue<V>(value, System.nanoTime()));
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void invalidate() {
+		if (!entries.isEmpty()) {
+			entries.clear();
+			invalidations++;
+		}
+	}
+
+	/**
+	 * Clears the cache and quantizes further keys to a new step grid.
+	 *
+	 * @param origin
+	 *            the smallest value of the slider
+	 * @param stepSize
+	 *            the step size, 0 for a continuous slider
+	 */
+	synchronized void invalidate(double origin, double stepSize) {
+		this.origin = origin;
+		this.stepSize = stepSize;
+		invalidate();
+	}
+
+	/**
+	 * Removes the entries that outlived the time to live. Expired entries are
+	 * otherwise only removed when they are looked up or pushed out.
+	 */
+	public synchronized void purgeExpired() {
+		if (timeToLive == 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		for (Iterator<CachedValue<V>> i = entries.values().iterator(); i.hasNext();) {
+			if (isExpired(i.next(), now)) {
+				i.remove();
+				evictions++;
+			}
+		}
+	}
+
+	private boolean isExpired(CachedValue<V> entry, long now) {
+		return timeToLive > 0 && now - entry.created > timeToLive;
+	}
+
+	private Key keyOf(Range range) {
+		if (stepSize > 0) {
+			return new Key(Math.round((range.getMin() - origin) / stepSize), Math.round((range.getMax() - origin)
+					/ stepSize));
+		}
+		return new Key(Double.doubleToLongBits(range.getMin()), Double.doubleToLongBits(range.getMax()));
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLive / 1000000L;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries removed because the cache was full or
+	 *         they expired
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of times the cache was cleared
+	 */
+	public synchronized long getInvalidationCount() {
+		return invalidations;
+	}
+
+	/**
+	 * @return hits divided by lookups, 0 before the first lookup
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		invalidations = 0;
+	}
+}
@@ -19,8 +19,23 @@
  */
 package com.lawal;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.vaadin.data.Property;
 import com.vaadin.terminal.PaintException;
 import com.vaadin.terminal.PaintTarget;
 import com.vaadin.ui.AbstractField;
@@ -32,15 +47,168 @@ public class RangeSliderBar extends AbstractField {
 	
 	private static final Object MIN_VALUE_VARIABLE = "knobmin";
 	private static final Object MAX_VALUE_VARIABLE = "knobmax";
-	private double rangeMin = 0;
-	private double rangeMax = 100;
-	private double stepSize = 1;
-	private int numTicks = 10;
-	private int numLabels = 10;
-	private boolean superImmediateMode = false;
-	private double knobMinValue = rangeMin;
-	private double knobMaxValue = rangeMax;
-	private String appendString = "";
+	private static final String REPAINT_ALL_VARIABLE = "repaintall";
+	private static final String STATS_VARIABLE = "stats";
+	private static final String THUMB_INDEX_VARIABLE = "thumbindex";
+	private static final String THUMB_VALUE_VARIABLE = "thumbvalue";
+	private static final String CONFIGURATION_MISSING_VARIABLE = "cfgmissing";
+	private static final String DRAG_KNOB_VARIABLE = "dragknob";
+	private static final String DRAG_VELOCITY_VARIABLE = "dragvelocity";
+	private static final String WINDOW_MIN_VARIABLE = "windowmin";
+	private static final String WINDOW_MAX_VARIABLE = "windowmax";
+	/**
+	 * The most thumbs a multi thumb slider can have.
+	 */
+	public static final int MAX_THUMBS = 16;
+	/**
+	 * The most grid points the count preview table has. Finer grids are
+	 * sampled, and the client interpolates between the samples.
+	 */
+	public static final int MAX_COUNT_POINTS = 1000;
+	/**
+	 * The executor of sliders that have asynchronous listeners but no
+	 * executor of their own, created when first needed.
+	 */
+	private static ExecutorService defaultAsyncExecutor;
+	/*
+	 * Attribute groups sent to the client by paintContent in delta mode.
+	 */
+	private static final int DIRTY_RANGE = 1;
+	private static final int DIRTY_STEP = 1 << 1;
+	private static final int DIRTY_TICKS = 1 << 2;
+	private static final int DIRTY_LABELS = 1 << 3;
+	private static final int DIRTY_SUPER_IMMEDIATE = 1 << 4;
+	private static final int DIRTY_KNOBS = 1 << 5;
+	private static final int DIRTY_APPEND = 1 << 6;
+	private static final int DIRTY_RENDERING = 1 << 7;
+	private static final int DIRTY_FORMAT = 1 << 8;
+	private static final int DIRTY_INSTRUMENT = 1 << 9;
+	private static final int DIRTY_HISTOGRAM = 1 << 10;
+	private static final int DIRTY_THUMBS = 1 << 11;
+	private static final int DIRTY_CONFIGURATION = 1 << 12;
+	private static final int DIRTY_PREFETCH = 1 << 13;
+	private static final int DIRTY_COUNTS = 1 << 14;
+	private static final int DIRTY_ZOOM = 1 << 15;
+	private static final int DIRTY_DENSITY = 1 << 16;
+	/**
+	 * The groups covered by a {@link SliderConfiguration}.
+	 */
+	private static final int CONFIGURATION_GROUPS = DIRTY_RANGE | DIRTY_STEP | DIRTY_TICKS | DIRTY_LABELS
+			| DIRTY_APPEND | DIRTY_FORMAT;
+	/*
+	 * The serialized form: its version, and the flags of the settings that
+	 * are written as one bit each, or are left out when at their defaults.
+	 */
+	private static final byte SERIAL_VERSION = 1;
+	private static final int SERIAL_DEFAULT_DISPLAY = 1;
+	private static final int SERIAL_DEFAULT_TUNING = 1 << 1;
+	private static final int SERIAL_ZOOMED = 1 << 2;
+	private static final int SERIAL_THUMBS = 1 << 3;
+	private static final int SERIAL_SUPER_IMMEDIATE = 1 << 4;
+	private static final int SERIAL_COALESCING = 1 << 5;
+	private static final int SERIAL_COMPACT_LABELS = 1 << 6;
+	private static final int SERIAL_DELTA_PAINTING = 1 << 7;
+	private static final int SERIAL_FRAME_RENDERING = 1 << 8;
+	private static final int SERIAL_CANVAS_RENDERING = 1 << 9;
+	private static final int SERIAL_INSTRUMENTATION = 1 << 10;
+	private static final int SERIAL_COUNT_PREVIEW = 1 << 11;
+	private static final int SERIAL_AUTO_DENSITY = 1 << 12;
+	private static final int SERIAL_ZOOMABLE = 1 << 13;
+	private static final int SERIAL_TIME_AXIS = 1 << 14;
+	private static final int SERIAL_CONFIGURATION_MISSING = 1 << 15;
+	private static final int SERIAL_CLIENT_INITIALIZED = 1 << 16;
+	private static final String DEFAULT_COUNT_PREVIEW_FORMAT = "{0} results";
+	private transient double rangeMin = 0;
+	private transient double rangeMax = 100;
+	private transient double stepSize = 1;
+	private transient int numTicks = 10;
+	private transient int numLabels = 10;
+	private transient boolean superImmediateMode = false;
+	private transient int superImmediateRate = 0;
+	private transient boolean superImmediateCoalescing = true;
+	private transient Range range;
+	/**
+	 * The range [rangeMin, rangeMax], kept so that a fully open slider does not
+	 * allocate a new value.
+	 */
+	private transient Range fullRange = Range.DEFAULT;
+	/**
+	 * The {@link DoublePair} handed out by {@link #getValue()}, created only
+	 * when a caller or listener asks for the value, and created again if a
+	 * caller changed its fields.
+	 */
+	private transient DoublePair pairView;
+	private transient String appendString = "";
+	private transient int labelDecimals = -1;
+	private transient String labelPrefix = "";
+	private transient boolean compactLabels = false;
+	/**
+	 * The number of updates that were dropped because they did not change
+	 * anything the client shows.
+	 */
+	private transient long suppressedChanges = 0;
+	private transient boolean deltaPainting = false;
+	private transient boolean frameRendering = false;
+	private transient boolean canvasRendering = false;
+	private transient boolean instrumentationEnabled = false;
+	/**
+	 * The counters last reported by the client while instrumentation is on.
+	 */
+	private Map<String, Long> clientStatistics = Collections.emptyMap();
+	private HistogramEngine histogram;
+	private RangeIndex rangeIndex;
+	private transient boolean countPreview = false;
+	private transient String countPreviewFormat = DEFAULT_COUNT_PREVIEW_FORMAT;
+	private transient boolean autoDensity = false;
+	private transient boolean zoomable = false;
+	private transient boolean timeAxis = false;
+	/**
+	 * The visible part of the range while zoomed in, NaN when the whole range
+	 * is shown.
+	 */
+	private transient double windowMin = Double.NaN;
+	private transient double windowMax = Double.NaN;
+	/**
+	 * The thumb values in multi thumb mode, in ascending order, null in two
+	 * knob mode.
+	 */
+	private transient double[] thumbs;
+	/**
+	 * The shared configuration the display settings come from, null if they
+	 * were set on this slider.
+	 */
+	private SliderConfiguration configuration;
+	/**
+	 * A bit indicating whether a configuration is being applied, so that the
+	 * setters it calls do not detach it.
+	 */
+	private transient boolean applyingConfiguration = false;
+	/**
+	 * A bit indicating whether the client reported that it does not know the
+	 * configuration, which is then painted with the next paint.
+	 */
+	private transient boolean configurationMissing = false;
+	private final List<AsyncRangeListener<?>> asyncListeners = new CopyOnWriteArrayList<AsyncRangeListener<?>>();
+	private transient Executor asyncExecutor;
+	/**
+	 * Created with the first asynchronous value, and again when the executor
+	 * changes.
+	 */
+	private transient AsyncDispatcher asyncDispatcher;
+	private RangeResultCache<?> resultCache;
+	private PrefetchHandler prefetchHandler;
+	private transient Prefetcher prefetcher;
+	private transient int prefetchRanges = 4;
+	private transient int prefetchMillis = 500;
+	/**
+	 * A bit indicating whether the client widget has received a full paint
+	 * that the next delta can build on.
+	 */
+	private transient boolean clientInitialized = false;
+	/**
+	 * The attribute groups changed since the last paint.
+	 */
+	private transient int dirty = 0;
 
 	/**
 	 * Default Slider constructor. Sets all values to defaults and the slide
@@ -49,7 +217,7 @@ public class RangeSliderBar extends AbstractField {
 	public RangeSliderBar() {
 		super();
 		setSizeFull();
-		setVal(knobMinValue, knobMaxValue, false);
+		setVal(rangeMin, rangeMax, false);
 	}
 
 	/**
@@ -117,15 +285,19 @@ public class RangeSliderBar extends AbstractField {
 	 *            New maximum value of the Slider.
 	 */
 	public void setRangeMax(double rangeMax) {
+		if (Double.compare(this.rangeMax, rangeMax) == 0) {
+			suppressedChanges++;
+			return;
+		}
 		this.rangeMax = rangeMax;
+		fullRange = Range.valueOf(rangeMin, rangeMax);
 
-		double presentMax = ((DoublePair) getValue()).max;
+		// invalidate the result cache before listeners see the clamped value
+		markDirty(DIRTY_RANGE);
 
-		if (rangeMax < presentMax) {
-			setVal(((DoublePair) getValue()).min, rangeMax, false);
+		if (rangeMax < range.getMax()) {
+			setVal(range.getMin(), rangeMax, false);
 		}
-
-		requestRepaint();
 	}
 
 	/**
@@ -145,15 +317,19 @@ public class RangeSliderBar extends AbstractField {
 	 *            New minimum value of the Slider.
 	 */
 	public void setRangeMin(double minRangeValue) {
+		if (Double.compare(this.rangeMin, minRangeValue) == 0) {
+			suppressedChanges++;
+			return;
+		}
 		this.rangeMin = minRangeValue;
+		fullRange = Range.valueOf(rangeMin, rangeMax);
 
-		double presentMin = ((DoublePair) getValue()).min;
+		// invalidate the result cache before listeners see the clamped value
+		markDirty(DIRTY_RANGE);
 
-		if (Double.compare(rangeMin, presentMin) > 0) {
-			setVal(rangeMin, ((DoublePair) getValue()).max, false);
+		if (Double.compare(rangeMin, range.getMin()) > 0) {
+			setVal(rangeMin, range.getMax(), false);
 		}
-
-		requestRepaint();
 	}
 
 	/**
@@ -174,8 +350,77 @@ public class RangeSliderBar extends AbstractField {
 		if (stepSize < 0) {
 			return;
 		}
+		if (Double.compare(this.stepSize, stepSize) == 0) {
+			suppressedChanges++;
+			return;
+		}
 		this.stepSize = stepSize;
-		requestRepaint();
+		markDirty(DIRTY_STEP);
+	}
+
+	/**
+	 * Starts a set of changes to the range, step size, ticks, labels and
+	 * knobs that is applied at once when committed.
+	 * 
+	 * @return the batch
+	 */
+	public SliderBatch beginBatch() {
+		return new SliderBatch(this);
+	}
+
+	/**
+	 * Validates and applies a committed batch.
+	 */
+	void commitBatch(SliderBatch batch) {
+		double newRangeMin = batch.rangeMin != null ? batch.rangeMin : rangeMin;
+		double newRangeMax = batch.rangeMax != null ? batch.rangeMax : rangeMax;
+		double newStepSize = batch.stepSize != null ? batch.stepSize : stepSize;
+		int newTicks = batch.numTicks != null ? batch.numTicks : numTicks;
+		int newLabels = batch.numLabels != null ? batch.numLabels : numLabels;
+		if (newRangeMax < newRangeMin) {
+			throw new IllegalArgumentException("rangeMax must not be less than rangeMin");
+		}
+		if (newStepSize < 0) {
+			throw new IllegalArgumentException("stepSize must not be negative");
+		}
+		if (newTicks < 0 || newLabels < 0) {
+			throw new IllegalArgumentException("The number of ticks and labels must not be negative");
+		}
+		if (batch.knobMin != null && batch.knobMax < batch.knobMin) {
+			throw new IllegalArgumentException("knobMax must not be less than knobMin");
+		}
+		int group = 0;
+		if (Double.compare(newRangeMin, rangeMin) != 0 || Double.compare(newRangeMax, rangeMax) != 0) {
+			rangeMin = newRangeMin;
+			rangeMax = newRangeMax;
+			fullRange = Range.valueOf(rangeMin, rangeMax);
+			group |= DIRTY_RANGE;
+		}
+		if (Double.compare(newStepSize, stepSize) != 0) {
+			stepSize = newStepSize;
+			group |= DIRTY_STEP;
+		}
+		if (newTicks != numTicks) {
+			numTicks = newTicks;
+			group |= DIRTY_TICKS;
+		}
+		if (newLabels != numLabels) {
+			numLabels = newLabels;
+			group |= DIRTY_LABELS;
+		}
+		if (group != 0) {
+			// before the value changes, so that listeners see the cache
+			// invalidated for the new grid
+			markDirty(group);
+		}
+		// the knobs are clamped to the final range only
+		double min = Math.min(batch.knobMin != null ? batch.knobMin : range.getMin(), rangeMax);
+		double max = Math.max(batch.knobMax != null ? batch.knobMax : range.getMax(), rangeMin);
+		if (group == 0 && range.matches(toMinDescrete(min), toMaxDescrete(max))) {
+			suppressedChanges++;
+			return;
+		}
+		setVal(min, max, false);
 	}
 
 	private double toMaxDescrete(double newMax) {
@@ -196,137 +441,1470 @@ public class RangeSliderBar extends AbstractField {
 	// send value to client
 	public void paintContent(PaintTarget target) throws PaintException {
 		super.paintContent(target);
-		target.addAttribute("rangeMin", rangeMin);
-		if (rangeMax > rangeMin) {
-			target.addAttribute("rangeMax", rangeMax);
-		} else {
-			target.addAttribute("rangeMax", rangeMin);
+		if (syncWithDataSource()) {
+			dirty |= DIRTY_KNOBS;
+		}
+		// in delta mode only the groups that changed since the last paint are
+		// sent, the client keeps the rest
+		int paint = !deltaPainting || !clientInitialized || target.isFullRepaint() ? ~0 : dirty;
+		if (configuration != null) {
+			// the settings of a shared configuration are sent once per page,
+			// other sliders only name it
+			if ((paint & CONFIGURATION_GROUPS) != 0) {
+				target.addAttribute("cfg", configuration.getId());
+				if (configuration.needsPaint(getWindow(), target) || configurationMissing) {
+					target.addAttribute("cfgdata", configuration.encode());
+					configurationMissing = false;
+				}
+			}
+			paint &= ~CONFIGURATION_GROUPS;
+		} else if ((dirty & DIRTY_CONFIGURATION) != 0) {
+			target.addAttribute("cfg", "");
+		}
+		if ((paint & DIRTY_RANGE) != 0) {
+			target.addAttribute("rangeMin", rangeMin);
+			if (rangeMax > rangeMin) {
+				target.addAttribute("rangeMax", rangeMax);
+			} else {
+				target.addAttribute("rangeMax", rangeMin);
+			}
+		}
+		if ((paint & DIRTY_STEP) != 0) {
+			target.addAttribute("stepsize", stepSize);
+		}
+		if ((paint & DIRTY_TICKS) != 0) {
+			target.addAttribute("numticks", numTicks);
+		}
+		if ((paint & DIRTY_LABELS) != 0) {
+			target.addAttribute("numlabels", numLabels);
+		}
+		if ((paint & DIRTY_SUPER_IMMEDIATE) != 0) {
+			target.addAttribute("superimmediate", superImmediateMode);
+			target.addAttribute("sendinterval", superImmediateRate > 0 ? Math.max(1, 1000 / superImmediateRate) : 0);
+			target.addAttribute("sendtrailing", superImmediateCoalescing);
+		}
+		if ((paint & DIRTY_KNOBS) != 0) {
+			target.addAttribute("knobmin", range.getMin());
+			target.addAttribute("knobmax", range.getMax());
+		}
+		if ((paint & DIRTY_APPEND) != 0) {
+			target.addAttribute("append", appendString);
+		}
+		if ((paint & DIRTY_FORMAT) != 0) {
+			target.addAttribute("labeldecimals", labelDecimals);
+			target.addAttribute("labelprefix", labelPrefix);
+			target.addAttribute("labelcompact", compactLabels);
+		}
+		if ((paint & DIRTY_THUMBS) != 0) {
+			target.addAttribute("thumbs", thumbs == null ? "" : encodeThumbs());
+		}
+		if ((paint & DIRTY_HISTOGRAM) != 0) {
+			if (histogram != null) {
+				target.addAttribute("histogram", histogram.encodeCounts());
+				target.addAttribute("historigin", histogram.getOrigin());
+				target.addAttribute("histwidth", histogram.getBucketWidth());
+			} else {
+				target.addAttribute("histogram", "");
+			}
+		}
+		if ((paint & DIRTY_INSTRUMENT) != 0) {
+			target.addAttribute("instrument", instrumentationEnabled);
+		}
+		if ((paint & DIRTY_COUNTS) != 0) {
+			paintCountPreview(target);
+		}
+		if ((paint & DIRTY_PREFETCH) != 0) {
+			target.addAttribute("prefetch", prefetchHandler != null);
 		}
-		target.addAttribute("stepsize", stepSize);
-		target.addAttribute("numticks", numTicks);
-		target.addAttribute("numlabels", numLabels);
-		target.addAttribute("superimmediate", superImmediateMode);
+		if ((paint & DIRTY_DENSITY) != 0) {
+			target.addAttribute("autodensity", autoDensity);
+		}
+		if ((paint & DIRTY_ZOOM) != 0) {
+			Range window = getZoomWindow();
+			target.addAttribute("zoomable", zoomable);
+			target.addAttribute("timeaxis", timeAxis);
+			target.addAttribute("windowmin", window.getMin());
+			target.addAttribute("windowmax", window.getMax());
+		}
+		if ((paint & DIRTY_RENDERING) != 0) {
+			target.addAttribute("framerendering", frameRendering);
+			target.addAttribute("canvasrendering", canvasRendering);
+		}
+		dirty = 0;
+		clientInitialized = true;
+	}
+
+	/**
+	 * Marks an attribute group as changed and requests a repaint.
+	 */
+	private void markDirty(int group) {
+		if ((group & CONFIGURATION_GROUPS) != 0 && configuration != null && !applyingConfiguration) {
+			// a setting of this slider alone, the client needs all of them
+			configuration = null;
+			group |= CONFIGURATION_GROUPS | DIRTY_CONFIGURATION;
+		}
+		if ((group & (DIRTY_RANGE | DIRTY_STEP)) != 0) {
+			// results computed for the old grid no longer apply
+			if (resultCache != null) {
+				resultCache.invalidate(rangeMin, stepSize);
+			}
+			if (countPreview) {
+				group |= DIRTY_COUNTS;
+			}
+			if (zoomable) {
+				// the window is kept inside the range
+				group |= DIRTY_ZOOM;
+			}
+		}
+		dirty |= group;
+		requestRepaint();
+	}
 
-		target.addAttribute("knobmin", knobMinValue);
-		target.addAttribute("knobmax", knobMaxValue);
+	/**
+	 * The client widget is created anew when the component is attached, so it
+	 * needs a full paint.
+	 */
+	@Override
+	public void attach() {
+		super.attach();
+		clientInitialized = false;
+	}
 
-		target.addAttribute("append", appendString);
+	@Override
+	public void detach() {
+		if (prefetcher != null) {
+			prefetcher.cancel();
+		}
+		super.detach();
 	}
 
 	/**
-	 * Invoked when the value of a variable has changed. RangeSliderBar
-	 * listeners are notified if the slider value has changed.
+	 * Takes the range, step size, ticks, labels, append string and label
+	 * format from a shared configuration. The settings are painted once per
+	 * page for all sliders using the configuration. Changing one of the
+	 * settings on this slider afterwards detaches it from the configuration.
 	 * 
-	 * @param source
-	 * @param variables
+	 * @param configuration
+	 *            the configuration, or null to keep the current settings as
+	 *            this slider's own
 	 */
+	public void setConfiguration(SliderConfiguration configuration) {
+		if (this.configuration == configuration) {
+			suppressedChanges++;
+			return;
+		}
+		if (configuration != null) {
+			applyingConfiguration = true;
+			try {
+				// widen before narrowing so that the knobs are not clamped
+				// to a range that only exists in between
+				if (configuration.getRangeMin() > rangeMax) {
+					setRangeMax(configuration.getRangeMax());
+					setRangeMin(configuration.getRangeMin());
+				} else {
+					setRangeMin(configuration.getRangeMin());
+					setRangeMax(configuration.getRangeMax());
+				}
+				setStepSize(configuration.getStepSize());
+				setNumberOfTicks(configuration.getNumberTicks());
+				setNumberOfLabels(configuration.getNumberLabels());
+				setAppendString(configuration.getAppendString());
+				setLabelDecimals(configuration.getLabelDecimals());
+				setLabelPrefix(configuration.getLabelPrefix());
+				setCompactLabels(configuration.isCompactLabels());
+			} finally {
+				applyingConfiguration = false;
+			}
+		}
+		markDirty(DIRTY_CONFIGURATION | CONFIGURATION_GROUPS);
+		this.configuration = configuration;
+	}
 
-	@Override
-	public void changeVariables(Object source, Map<String, Object> variables) {
-		super.changeVariables(source, variables);
+	/**
+	 * @return the shared configuration, or null if the slider has its own
+	 *         settings
+	 */
+	public SliderConfiguration getConfiguration() {
+		return configuration;
+	}
 
-		if (variables.containsKey(MIN_VALUE_VARIABLE) && variables.containsKey(MAX_VALUE_VARIABLE)) {
-			final Double min = new Double(variables.get(MIN_VALUE_VARIABLE).toString());
-			final Double max = new Double(variables.get(MAX_VALUE_VARIABLE).toString());
+	/**
+	 * In delta mode, paintContent sends only the attributes that changed since
+	 * the previous paint. The first paint after attaching, and any full
+	 * repaint of the window, still sends everything.
+	 * 
+	 * @param deltaPainting
+	 */
+	public void setDeltaPainting(boolean deltaPainting) {
+		this.deltaPainting = deltaPainting;
+	}
 
-			setVal(min, max, true);
+	public boolean isDeltaPainting() {
+		return deltaPainting;
+	}
 
+	/**
+	 * If frame rendering is on, the client moves the knobs once per animation
+	 * frame using CSS transforms, and measures the line and knobs only when
+	 * the slider is resized. This keeps dragging at the display refresh rate
+	 * on slow machines.
+	 * 
+	 * @param frameRendering
+	 */
+	public void setFrameRendering(boolean frameRendering) {
+		if (this.frameRendering == frameRendering) {
+			suppressedChanges++;
+			return;
 		}
+		this.frameRendering = frameRendering;
+		markDirty(DIRTY_RENDERING);
 	}
 
-	@Override
-	public Class<?> getType() {
-		return DoublePair.class;
+	public boolean isFrameRendering() {
+		return frameRendering;
 	}
 
 	/**
-	 * The number of tick marks to show.
+	 * If canvas rendering is on, the client draws the line, progress, ticks,
+	 * labels and knobs into one canvas instead of building an element for
+	 * each, and moving a knob repaints only the part of the canvas it
+	 * crossed. Dashboards with many sliders save the cost of the elements
+	 * and their styles. The canvas uses the colors of the default theme, so
+	 * style sheet changes to those parts do not apply. Browsers without
+	 * canvas support keep the elements.
+	 * 
+	 * @param canvasRendering
 	 */
-	public void setNumberOfTicks(int numTicks) {
-		this.numTicks = numTicks;
+	public void setCanvasRendering(boolean canvasRendering) {
+		if (this.canvasRendering == canvasRendering) {
+			suppressedChanges++;
+			return;
+		}
+		this.canvasRendering = canvasRendering;
+		markDirty(DIRTY_RENDERING);
 	}
 
-	public int getNumberTicks() {
-		return numTicks;
+	public boolean isCanvasRendering() {
+		return canvasRendering;
 	}
 
 	/**
-	 * The number of labels to show.
+	 * If instrumentation is on, the client counts browser events per type,
+	 * times its draw calls, counts the values it sends and measures the time
+	 * from a send to the next update. The counters are reported with the
+	 * final value of each drag and can be read with
+	 * {@link #getClientStatistics()}. Instrumentation costs nothing on the
+	 * client while it is off.
+	 * 
+	 * @param instrumentationEnabled
 	 */
-	public void setNumberOfLabels(int numLabels) {
-		this.numLabels = numLabels;
+	public void setInstrumentationEnabled(boolean instrumentationEnabled) {
+		if (this.instrumentationEnabled == instrumentationEnabled) {
+			suppressedChanges++;
+			return;
+		}
+		this.instrumentationEnabled = instrumentationEnabled;
+		markDirty(DIRTY_INSTRUMENT);
 	}
 
-	public int getNumberLabels() {
-		return numLabels;
+	public boolean isInstrumentationEnabled() {
+		return instrumentationEnabled;
 	}
 
 	/**
-	 * If super immediate mode is true, values are immediately received from
-	 * client when dragging with the mouse and when the Arrow keys are pressed
-	 * down
+	 * Returns the counters last reported by the client, such as
+	 * event.mousemove, draw.knobs.ms, send.count and roundtrip.maxms. Times
+	 * are in milliseconds and counters are totals since instrumentation was
+	 * turned on.
 	 * 
-	 * @param superImmediateMode
+	 * @return an unmodifiable map of counter names to values, empty if
+	 *         nothing has been reported
 	 */
-	public void setSuperImmediateMode(boolean superImmediateMode) {
-		if (superImmediateMode)
-			this.setImmediate(true);
-		this.superImmediateMode = superImmediateMode;
-		requestRepaint();
+	public Map<String, Long> getClientStatistics() {
+		return clientStatistics;
 	}
 
-	public boolean isSuperImmediateMode() {
-		return superImmediateMode;
+	/**
+	 * Shows the distribution of the given histogram behind the track. The
+	 * client draws the buckets once and highlights the ones inside the
+	 * selected range while dragging, without contacting the server.
+	 * 
+	 * @param histogram
+	 *            the histogram to show, or null to show none
+	 * @see HistogramEngine#forSlider(RangeSliderBar, int)
+	 */
+	public void setHistogram(HistogramEngine histogram) {
+		this.histogram = histogram;
+		markDirty(DIRTY_HISTOGRAM);
 	}
 
-	public DoublePair getKnobValues() {
-		return (DoublePair) super.getValue();
+	public HistogramEngine getHistogram() {
+		return histogram;
 	}
 
 	/**
-	 * Set the value of this Slider.
+	 * Turns the slider into a multi thumb slider with the given thumbs, or
+	 * moves the thumbs of a multi thumb slider. The values are sorted and
+	 * confined to the range. The value of the slider is the span from the
+	 * first to the last thumb, and moving any thumb fires a value change
+	 * event.
+	 * 
+	 * @param values
+	 *            between 2 and {@link #MAX_THUMBS} thumb values
+	 */
+	public void setThumbValues(double... values) {
+		if (values.length < 2 || values.length > MAX_THUMBS) {
+			throw new IllegalArgumentException("A slider has between 2 and " + MAX_THUMBS + " thumbs");
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = toMaxDescrete(toMinDescrete(sorted[i]));
+		}
+		if (Arrays.equals(sorted, thumbs)) {
+			suppressedChanges++;
+			return;
+		}
+		thumbs = sorted;
+		markDirty(DIRTY_THUMBS);
+		Range before = range;
+		setVal(thumbs[0], thumbs[thumbs.length - 1], false);
+		if (range == before) {
+			// only inner thumbs moved
+			fireValueChange(false);
+			submitAsync();
+		}
+	}
+
+	/**
+	 * Moves one thumb of a multi thumb slider. The thumb can not pass its
+	 * neighbours.
 	 * 
+	 * @param index
 	 * @param value
-	 *            New value of Slider. Must be within Sliders range (rangeMin -
-	 *            rangeMax), otherwise throws an exception.
-	 * @param repaintIsNotNeeded
-	 *            If true, client-side is not requested to repaint itself.
-	 * @throws ValueOutOfBoundsException
 	 */
-	protected void setVal(double min, double max, boolean repaintIsNotNeeded) {
+	public void setThumbValue(int index, double value) {
+		if (thumbs == null) {
+			throw new IllegalStateException("The slider has no thumbs, call setThumbValues first");
+		}
+		setThumb(index, value, false);
+	}
+
+	/**
+	 * @return a copy of the thumb values, or null if the slider is in two
+	 *         knob mode
+	 */
+	public double[] getThumbValues() {
+		return thumbs == null ? null : thumbs.clone();
+	}
 
-		knobMinValue = toMinDescrete(min);
-		knobMaxValue = toMaxDescrete(max);
+	public double getThumbValue(int index) {
+		return thumbs[index];
+	}
 
-		if (knobMaxValue < knobMinValue) {
-			knobMaxValue = knobMinValue;
+	/**
+	 * @return the number of thumbs, 0 in two knob mode
+	 */
+	public int getThumbCount() {
+		return thumbs == null ? 0 : thumbs.length;
+	}
+
+	/**
+	 * Goes back to two knobs at the first and last thumb.
+	 */
+	public void clearThumbs() {
+		if (thumbs == null) {
+			suppressedChanges++;
+			return;
+		}
+		thumbs = null;
+		markDirty(DIRTY_THUMBS);
+	}
+
+	private void setThumb(int index, double value, boolean repaintIsNotNeeded) {
+		double low = index == 0 ? rangeMin : thumbs[index - 1];
+		double high = index == thumbs.length - 1 ? rangeMax : thumbs[index + 1];
+		double confined = Math.max(low, Math.min(high, value));
+		boolean clamped = Double.compare(confined, value) != 0;
+		if (Double.compare(confined, thumbs[index]) == 0) {
+			if (repaintIsNotNeeded && clamped) {
+				markDirty(DIRTY_THUMBS);
+			} else {
+				suppressedChanges++;
+			}
+			return;
+		}
+		thumbs[index] = confined;
+		if (clamped) {
+			repaintIsNotNeeded = false;
+		}
+		if (!repaintIsNotNeeded) {
+			markDirty(DIRTY_THUMBS);
+		}
+		if (index == 0 || index == thumbs.length - 1) {
+			setVal(thumbs[0], thumbs[thumbs.length - 1], repaintIsNotNeeded);
+		} else {
+			fireValueChange(repaintIsNotNeeded);
+			submitAsync();
 		}
-		DoublePair dv = new DoublePair(knobMinValue, knobMaxValue);
-	
-		super.setValue(dv, repaintIsNotNeeded);
 	}
 
-	public void setKnobValues(Double minValue, Double maxValue) {
+	/**
+	 * Moves the first and last thumb to the knob values and keeps the inner
+	 * thumbs between them.
+	 */
+	private void syncThumbs(boolean repaintIsNotNeeded) {
+		int last = thumbs.length - 1;
+		boolean changed = false;
+		for (int i = 0; i <= last; i++) {
+			double value = i == 0 ? range.getMin() : i == last ? range.getMax() : Math.max(range.getMin(),
+					Math.min(range.getMax(), thumbs[i]));
+			if (Double.compare(value, thumbs[i]) != 0) {
+				thumbs[i] = value;
+				changed = true;
+			}
+		}
+		if (changed && !repaintIsNotNeeded) {
+			dirty |= DIRTY_THUMBS;
+		}
+	}
 
-		setVal(minValue, maxValue, false);
+	private String encodeThumbs() {
+		StringBuilder encoded = new StringBuilder();
+		for (int i = 0; i < thumbs.length; i++) {
+			if (i > 0) {
+				encoded.append(',');
+			}
+			encoded.append(thumbs[i]);
+		}
+		return encoded.toString();
 	}
 
-	@Override
-	public void setValue(Object newValue){
-		if (!(newValue instanceof DoublePair)) {
-			throw new IllegalArgumentException("Value of Type " + DoublePair.class.getSimpleName() + " was excepted");
+	/**
+	 * Binds the slider to an index of the data it filters, so that the rows
+	 * inside the selected range can be looked up by binary search.
+	 * 
+	 * @param rangeIndex
+	 *            the index, or null to unbind
+	 */
+	public void setRangeIndex(RangeIndex rangeIndex) {
+		this.rangeIndex = rangeIndex;
+		if (countPreview) {
+			markDirty(DIRTY_COUNTS);
+		}
+	}
+
+	public RangeIndex getRangeIndex() {
+		return rangeIndex;
+	}
+
+	/**
+	 * @return the number of indexed rows inside the selected range, 0 if no
+	 *         index is bound
+	 */
+	public int getSelectedCount() {
+		return rangeIndex == null ? 0 : rangeIndex.count(range);
+	}
+
+	/**
+	 * @return the ids of the indexed rows inside the selected range, in key
+	 *         order, empty if no index is bound
+	 */
+	public int[] getSelectedIds() {
+		return rangeIndex == null ? new int[0] : rangeIndex.ids(range);
+	}
 
+	/**
+	 * Adds a listener whose work runs on the executor of this slider instead
+	 * of in the request that changed the value. While a computation runs,
+	 * newer values replace each other and only the latest one is computed
+	 * next; a result is applied under the application lock unless a newer
+	 * value arrived meanwhile.
+	 * 
+	 * Changes made by apply reach the browser with the next request of the
+	 * page, such as the next value sent while dragging.
+	 * 
+	 * @param listener
+	 * @see #setAsyncExecutor(Executor)
+	 */
+	public void addAsyncListener(AsyncRangeListener<?> listener) {
+		asyncListeners.add(listener);
+	}
+
+	public void removeAsyncListener(AsyncRangeListener<?> listener) {
+		asyncListeners.remove(listener);
+	}
+
+	List<AsyncRangeListener<?>> getAsyncListeners() {
+		return asyncListeners;
+	}
+
+	/**
+	 * Sets the executor asynchronous listeners run on. On Java 21 and later
+	 * Executors.newVirtualThreadPerTaskExecutor() runs each computation on a
+	 * virtual thread. Without an executor of their own, sliders share a pool
+	 * of daemon threads.
+	 * 
+	 * @param executor
+	 *            the executor, or null for the shared one
+	 */
+	public void setAsyncExecutor(Executor executor) {
+		if (executor != asyncExecutor) {
+			asyncExecutor = executor;
+			if (asyncDispatcher != null) {
+				// one dispatcher keeps numbering the values, so a result
+				// computed on the old executor can not overtake a newer one
+				asyncDispatcher.setExecutor(getAsyncExecutor());
+			}
 		}
+	}
 
-		DoublePair val = (DoublePair) newValue;
-		setVal(val.min, val.max, false);
+	public Executor getAsyncExecutor() {
+		if (asyncExecutor != null) {
+			return asyncExecutor;
+		}
+		synchronized (RangeSliderBar.class) {
+			if (defaultAsyncExecutor == null) {
+				defaultAsyncExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "RangeSliderBar-async-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return defaultAsyncExecutor;
+		}
 	}
 
-	public String getAppendString() {
-		return appendString;
+	/**
+	 * @return the number of values that were not delivered to asynchronous
+	 *         listeners, or whose results were not applied, because a newer
+	 *         value arrived first
+	 */
+	public long getDroppedAsyncCount() {
+		return asyncDispatcher == null ? 0 : asyncDispatcher.getDroppedCount();
 	}
 
-	public void setAppendString(String appendString) {
-		this.appendString = appendString;
+	/**
+	 * Binds a cache for results computed from the value of this slider. The
+	 * cache quantizes ranges to the step grid of the slider and is cleared
+	 * whenever rangeMin, rangeMax or the step size change.
+	 * 
+	 * @param resultCache
+	 *            the cache, or null to unbind
+	 */
+	public void setResultCache(RangeResultCache<?> resultCache) {
+		this.resultCache = resultCache;
+		if (resultCache != null) {
+			resultCache.invalidate(rangeMin, stepSize);
+		}
+	}
+
+	public RangeResultCache<?> getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Sets a handler that warms results for the ranges a dragged knob is
+	 * likely to reach next. While a handler is set, the client reports which
+	 * knob is dragged and how fast with each value it sends; the slider
+	 * extrapolates the knob and passes the predicted ranges to the handler
+	 * on the asynchronous executor. Each new value cancels the previous
+	 * batch, and releasing the knob cancels it without starting another.
+	 * 
+	 * Values are sent during a drag only in super immediate mode.
+	 * 
+	 * @param prefetchHandler
+	 *            the handler, or null to stop prefetching
+	 * @see #setAsyncExecutor(Executor)
+	 */
+	public void setPrefetchHandler(PrefetchHandler prefetchHandler) {
+		if (prefetchHandler == this.prefetchHandler) {
+			suppressedChanges++;
+			return;
+		}
+		if (prefetcher != null) {
+			prefetcher.cancel();
+			prefetcher = null;
+		}
+		boolean wasPrefetching = this.prefetchHandler != null;
+		this.prefetchHandler = prefetchHandler;
+		if (wasPrefetching != (prefetchHandler != null)) {
+			markDirty(DIRTY_PREFETCH);
+		}
+	}
+
+	public PrefetchHandler getPrefetchHandler() {
+		return prefetchHandler;
+	}
+
+	/**
+	 * Limits the work done for one value sent while dragging.
+	 * 
+	 * @param maxRanges
+	 *            the most ranges predicted, each one a tenth of a second
+	 *            further ahead
+	 * @param maxMillis
+	 *            the time after which the batch is cancelled
+	 */
+	public void setPrefetchBudget(int maxRanges, int maxMillis) {
+		if (maxRanges < 0 || maxMillis < 0) {
+			throw new IllegalArgumentException("The prefetch budget must not be negative");
+		}
+		prefetchRanges = maxRanges;
+		prefetchMillis = maxMillis;
+	}
+
+	public int getPrefetchRanges() {
+		return prefetchRanges;
+	}
+
+	public int getPrefetchMillis() {
+		return prefetchMillis;
+	}
+
+	/**
+	 * Starts a prefetch batch for the knob the client is dragging, or cancels
+	 * the running one once the knob stops.
+	 * 
+	 * @param knob
+	 *            0 for the min knob, 1 for the max knob, the thumb index in
+	 *            multi thumb mode
+	 * @param velocity
+	 *            in values per second
+	 */
+	private void prefetch(int knob, double velocity) {
+		if (prefetchHandler == null) {
+			return;
+		}
+		if (prefetcher == null) {
+			prefetcher = new Prefetcher(prefetchHandler);
+		}
+		if (thumbs != null) {
+			// inner thumbs do not change the range
+			knob = knob == 0 ? 0 : knob == thumbs.length - 1 ? 1 : -1;
+		}
+		if (velocity == 0 || knob < 0 || knob > 1 || prefetchRanges == 0) {
+			prefetcher.cancel();
+			return;
+		}
+		prefetcher.start(Prefetcher.predict(range, knob, velocity, rangeMin, rangeMax, stepSize, prefetchRanges),
+				prefetchMillis, getAsyncExecutor());
+	}
+
+	/**
+	 * If the count preview is on, the slider shows how many rows of its range
+	 * index are inside the selected range, and the client updates the number
+	 * while the knobs are dragged without contacting the server. The server
+	 * sends a table of cumulative counts on the step grid with the paint;
+	 * grids of more than {@link #MAX_COUNT_POINTS} points are sampled and the
+	 * counts between samples are interpolated.
+	 * 
+	 * @param countPreview
+	 * @see #setRangeIndex(RangeIndex)
+	 */
+	public void setCountPreview(boolean countPreview) {
+		if (this.countPreview == countPreview) {
+			suppressedChanges++;
+			return;
+		}
+		this.countPreview = countPreview;
+		markDirty(DIRTY_COUNTS);
+	}
+
+	public boolean isCountPreview() {
+		return countPreview;
+	}
+
+	/**
+	 * Sets the text of the count preview, in which {0} is replaced by the
+	 * count.
+	 * 
+	 * @param countPreviewFormat
+	 */
+	public void setCountPreviewFormat(String countPreviewFormat) {
+		if (countPreviewFormat.equals(this.countPreviewFormat)) {
+			suppressedChanges++;
+			return;
+		}
+		this.countPreviewFormat = countPreviewFormat;
+		if (countPreview) {
+			markDirty(DIRTY_COUNTS);
+		}
+	}
+
+	public String getCountPreviewFormat() {
+		return countPreviewFormat;
+	}
+
+	/**
+	 * Sends the count table to the client again, after rows were added to or
+	 * removed from the range index.
+	 */
+	public void refreshCountPreview() {
+		if (countPreview) {
+			markDirty(DIRTY_COUNTS);
+		}
+	}
+
+	private void paintCountPreview(PaintTarget target) throws PaintException {
+		double span = rangeMax - rangeMin;
+		if (!countPreview || rangeIndex == null || !(span > 0)) {
+			target.addAttribute("counts", "");
+			return;
+		}
+		double spacing;
+		if (stepSize > 0 && span / stepSize < MAX_COUNT_POINTS) {
+			spacing = stepSize;
+		} else if (stepSize > 0) {
+			// sample whole steps so that samples stay on the grid
+			spacing = stepSize * Math.ceil(span / stepSize / (MAX_COUNT_POINTS - 1));
+		} else {
+			spacing = span / (MAX_COUNT_POINTS - 1);
+		}
+		// the last point is rangeMax even if the span is not a whole number
+		// of steps
+		int points = (int) Math.ceil(span / spacing - 1e-9) + 1;
+		target.addAttribute("counts", rangeIndex.encodeCumulativeCounts(rangeMin, spacing, rangeMax, points));
+		target.addAttribute("countspacing", spacing);
+		target.addAttribute("countformat", countPreviewFormat);
+	}
+
+	/**
+	 * If automatic density is on, the client shows only as many ticks and
+	 * labels as fit the width of the slider, at round values, and the number
+	 * of ticks and labels become the most shown. Labels keep a gap between
+	 * them and at most 100 of each are created, however large the numbers
+	 * set. The marks are chosen again when the width changes by more than a
+	 * few dozen pixels.
+	 * 
+	 * @param autoDensity
+	 * @see #setNumberOfTicks(int)
+	 * @see #setNumberOfLabels(int)
+	 */
+	public void setAutoDensity(boolean autoDensity) {
+		if (this.autoDensity == autoDensity) {
+			suppressedChanges++;
+			return;
+		}
+		this.autoDensity = autoDensity;
+		markDirty(DIRTY_DENSITY);
+	}
+
+	public boolean isAutoDensity() {
+		return autoDensity;
+	}
+
+	/**
+	 * If the slider is zoomable, ctrl+wheel over it zooms into the range
+	 * around the mouse, down to a window a few steps wide. Ticks and labels
+	 * then mark the visible window at a level of detail of its own, so a
+	 * range of many years can be zoomed in to single hours; the number of
+	 * ticks and labels become the most shown at a time. Knobs outside the
+	 * window stay at its edges.
+	 * 
+	 * @param zoomable
+	 * @see #setTimeAxis(boolean)
+	 */
+	public void setZoomable(boolean zoomable) {
+		if (this.zoomable == zoomable) {
+			suppressedChanges++;
+			return;
+		}
+		this.zoomable = zoomable;
+		if (!zoomable) {
+			windowMin = Double.NaN;
+			windowMax = Double.NaN;
+		}
+		markDirty(DIRTY_ZOOM);
+	}
+
+	public boolean isZoomable() {
+		return zoomable;
+	}
+
+	/**
+	 * If the values are times in milliseconds since the epoch, a zoomable
+	 * slider marks whole years, months, days, hours, minutes or seconds of
+	 * the calendar of the browser and labels them as dates or times. Use a
+	 * whole number step size, such as 60000 for minutes, so that the knobs
+	 * snap exactly even on ranges of many years.
+	 * 
+	 * @param timeAxis
+	 */
+	public void setTimeAxis(boolean timeAxis) {
+		if (this.timeAxis == timeAxis) {
+			suppressedChanges++;
+			return;
+		}
+		this.timeAxis = timeAxis;
+		markDirty(DIRTY_ZOOM);
+	}
+
+	public boolean isTimeAxis() {
+		return timeAxis;
+	}
+
+	/**
+	 * Zooms a zoomable slider in on a part of its range. The window is moved
+	 * inside the range if needed; a window covering the whole range shows
+	 * the slider unzoomed.
+	 * 
+	 * @param min
+	 * @param max
+	 */
+	public void setZoomWindow(double min, double max) {
+		if (!zoomable) {
+			throw new IllegalStateException("The slider is not zoomable");
+		}
+		if (!(max > min)) {
+			throw new IllegalArgumentException("The window must not be empty");
+		}
+		if (setWindow(min, max)) {
+			markDirty(DIRTY_ZOOM);
+		} else {
+			suppressedChanges++;
+		}
+	}
+
+	/**
+	 * Shows the whole range again.
+	 */
+	public void resetZoom() {
+		if (Double.isNaN(windowMin)) {
+			suppressedChanges++;
+			return;
+		}
+		windowMin = Double.NaN;
+		windowMax = Double.NaN;
+		markDirty(DIRTY_ZOOM);
+	}
+
+	/**
+	 * Returns the visible part of the range, as zoomed to by the user or set
+	 * with {@link #setZoomWindow(double, double)}.
+	 * 
+	 * @return the window, the whole range when not zoomed in
+	 */
+	public Range getZoomWindow() {
+		if (Double.isNaN(windowMin)) {
+			return Range.valueOf(rangeMin, rangeMax);
+		}
+		// the range may have shrunk since the window was set
+		double width = Math.min(windowMax - windowMin, rangeMax - rangeMin);
+		double min = Math.max(rangeMin, Math.min(rangeMax - width, windowMin));
+		return Range.valueOf(min, min + width);
+	}
+
+	/**
+	 * Sets the window, moved inside the range.
+	 * 
+	 * @return true if the window changed
+	 */
+	private boolean setWindow(double min, double max) {
+		double width = Math.min(max - min, rangeMax - rangeMin);
+		double newMin = Double.NaN;
+		double newMax = Double.NaN;
+		if (width > 0 && width < rangeMax - rangeMin) {
+			newMin = Math.max(rangeMin, Math.min(rangeMax - width, min));
+			newMax = newMin + width;
+		}
+		if (Double.compare(newMin, windowMin) == 0 && Double.compare(newMax, windowMax) == 0) {
+			return false;
+		}
+		windowMin = newMin;
+		windowMax = newMax;
+		return true;
+	}
+
+	/**
+	 * Sends the counts of the histogram to the client again, after values
+	 * were added to or removed from it.
+	 */
+	public void refreshHistogram() {
+		if (histogram != null) {
+			markDirty(DIRTY_HISTOGRAM);
+		}
+	}
+
+	/**
+	 * Invoked when the value of a variable has changed. RangeSliderBar
+	 * listeners are notified if the slider value has changed.
+	 * 
+	 * @param source
+	 * @param variables
+	 */
+
+	@Override
+	public void changeVariables(Object source, Map<String, Object> variables) {
+		super.changeVariables(source, variables);
+
+		if (variables.containsKey(REPAINT_ALL_VARIABLE)) {
+			// the client has lost the state a delta would build on
+			clientInitialized = false;
+			requestRepaint();
+		}
+		if (variables.containsKey(CONFIGURATION_MISSING_VARIABLE)) {
+			// the client got a slider before the configuration it names
+			configurationMissing = true;
+			clientInitialized = false;
+			requestRepaint();
+		}
+		if (variables.containsKey(STATS_VARIABLE)) {
+			clientStatistics = parseStatistics((String[]) variables.get(STATS_VARIABLE));
+		}
+		if (zoomable && variables.containsKey(WINDOW_MIN_VARIABLE) && variables.containsKey(WINDOW_MAX_VARIABLE)) {
+			// the client already shows the window it zoomed to
+			setWindow(toDouble(variables.get(WINDOW_MIN_VARIABLE)), toDouble(variables.get(WINDOW_MAX_VARIABLE)));
+		}
+
+		if (variables.containsKey(MIN_VALUE_VARIABLE) && variables.containsKey(MAX_VALUE_VARIABLE)) {
+			final double min = toDouble(variables.get(MIN_VALUE_VARIABLE));
+			final double max = toDouble(variables.get(MAX_VALUE_VARIABLE));
+
+			setVal(min, max, true);
+			if (variables.containsKey(DRAG_KNOB_VARIABLE) && variables.containsKey(DRAG_VELOCITY_VARIABLE)) {
+				prefetch(((Integer) variables.get(DRAG_KNOB_VARIABLE)).intValue(),
+						toDouble(variables.get(DRAG_VELOCITY_VARIABLE)));
+			}
+		}
+		if (thumbs != null && variables.containsKey(THUMB_INDEX_VARIABLE)
+				&& variables.containsKey(THUMB_VALUE_VARIABLE)) {
+			int index = ((Integer) variables.get(THUMB_INDEX_VARIABLE)).intValue();
+			if (index >= 0 && index < thumbs.length) {
+				setThumb(index, toDouble(variables.get(THUMB_VALUE_VARIABLE)), true);
+				if (variables.containsKey(DRAG_KNOB_VARIABLE) && variables.containsKey(DRAG_VELOCITY_VARIABLE)) {
+					prefetch(index, toDouble(variables.get(DRAG_VELOCITY_VARIABLE)));
+				}
+			}
+		}
+	}
+
+	private static Map<String, Long> parseStatistics(String[] counters) {
+		Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+		for (String counter : counters) {
+			int split = counter.indexOf('=');
+			if (split > 0) {
+				try {
+					statistics.put(counter.substring(0, split), Long.valueOf(counter.substring(split + 1)));
+				} catch (NumberFormatException e) {
+					// skip counters this version does not understand
+				}
+			}
+		}
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	private static double toDouble(Object variable) {
+		if (variable instanceof Number) {
+			return ((Number) variable).doubleValue();
+		}
+		return Double.parseDouble(variable.toString());
+	}
+
+	/**
+	 * Writes the settings of the slider as primitives behind a version byte
+	 * and one int of flags, instead of the default form with a descriptor per
+	 * field. Settings at their defaults take no more than their flag. The
+	 * histogram, index and result cache are referenced from here and write
+	 * compact forms of their own, as their data can not be rebuilt by the
+	 * slider. The state of the Vaadin superclasses and the listeners is
+	 * written the default way.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		boolean defaultDisplay = rangeMin == 0 && rangeMax == 100 && stepSize == 1 && numTicks == 10
+				&& numLabels == 10 && appendString.length() == 0 && labelDecimals == -1 && labelPrefix.length() == 0;
+		boolean defaultTuning = superImmediateRate == 0 && prefetchRanges == 4 && prefetchMillis == 500
+				&& countPreviewFormat.equals(DEFAULT_COUNT_PREVIEW_FORMAT);
+		int flags = (defaultDisplay ? SERIAL_DEFAULT_DISPLAY : 0) | (defaultTuning ? SERIAL_DEFAULT_TUNING : 0)
+				| (Double.isNaN(windowMin) ? 0 : SERIAL_ZOOMED) | (thumbs == null ? 0 : SERIAL_THUMBS)
+				| (superImmediateMode ? SERIAL_SUPER_IMMEDIATE : 0)
+				| (superImmediateCoalescing ? SERIAL_COALESCING : 0) | (compactLabels ? SERIAL_COMPACT_LABELS : 0)
+				| (deltaPainting ? SERIAL_DELTA_PAINTING : 0) | (frameRendering ? SERIAL_FRAME_RENDERING : 0)
+				| (canvasRendering ? SERIAL_CANVAS_RENDERING : 0)
+				| (instrumentationEnabled ? SERIAL_INSTRUMENTATION : 0)
+				| (countPreview ? SERIAL_COUNT_PREVIEW : 0) | (autoDensity ? SERIAL_AUTO_DENSITY : 0)
+				| (zoomable ? SERIAL_ZOOMABLE : 0) | (timeAxis ? SERIAL_TIME_AXIS : 0)
+				| (configurationMissing ? SERIAL_CONFIGURATION_MISSING : 0)
+				| (clientInitialized ? SERIAL_CLIENT_INITIALIZED : 0);
+		out.writeByte(SERIAL_VERSION);
+		out.writeInt(flags);
+		if (!defaultDisplay) {
+			out.writeDouble(rangeMin);
+			out.writeDouble(rangeMax);
+			out.writeDouble(stepSize);
+			out.writeInt(numTicks);
+			out.writeInt(numLabels);
+			out.writeInt(labelDecimals);
+			out.writeUTF(appendString);
+			out.writeUTF(labelPrefix);
+		}
+		if (!defaultTuning) {
+			out.writeInt(superImmediateRate);
+			out.writeInt(prefetchRanges);
+			out.writeInt(prefetchMillis);
+			out.writeUTF(countPreviewFormat);
+		}
+		out.writeDouble(range.getMin());
+		out.writeDouble(range.getMax());
+		if (!Double.isNaN(windowMin)) {
+			out.writeDouble(windowMin);
+			out.writeDouble(windowMax);
+		}
+		if (thumbs != null) {
+			out.writeByte(thumbs.length);
+			for (double thumb : thumbs) {
+				out.writeDouble(thumb);
+			}
+		}
+		out.writeLong(suppressedChanges);
+		out.writeInt(dirty);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte version = in.readByte();
+		if (version != SERIAL_VERSION) {
+			throw new InvalidObjectException("Unsupported RangeSliderBar version " + version);
+		}
+		int flags = in.readInt();
+		if ((flags & SERIAL_DEFAULT_DISPLAY) != 0) {
+			rangeMin = 0;
+			rangeMax = 100;
+			stepSize = 1;
+			numTicks = 10;
+			numLabels = 10;
+			labelDecimals = -1;
+			appendString = "";
+			labelPrefix = "";
+		} else {
+			rangeMin = in.readDouble();
+			rangeMax = in.readDouble();
+			stepSize = in.readDouble();
+			numTicks = in.readInt();
+			numLabels = in.readInt();
+			labelDecimals = in.readInt();
+			appendString = in.readUTF();
+			labelPrefix = in.readUTF();
+		}
+		if ((flags & SERIAL_DEFAULT_TUNING) != 0) {
+			superImmediateRate = 0;
+			prefetchRanges = 4;
+			prefetchMillis = 500;
+			countPreviewFormat = DEFAULT_COUNT_PREVIEW_FORMAT;
+		} else {
+			superImmediateRate = in.readInt();
+			prefetchRanges = in.readInt();
+			prefetchMillis = in.readInt();
+			countPreviewFormat = in.readUTF();
+		}
+		fullRange = Range.valueOf(rangeMin, rangeMax);
+		double min = in.readDouble();
+		double max = in.readDouble();
+		// share the instance the superclass holds as the value
+		Object value = getPropertyDataSource() == null ? super.getValue() : null;
+		range = value instanceof Range && ((Range) value).matches(min, max) ? (Range) value
+				: fullRange.matches(min, max) ? fullRange : Range.valueOf(min, max);
+		if ((flags & SERIAL_ZOOMED) != 0) {
+			windowMin = in.readDouble();
+			windowMax = in.readDouble();
+		} else {
+			windowMin = Double.NaN;
+			windowMax = Double.NaN;
+		}
+		if ((flags & SERIAL_THUMBS) != 0) {
+			thumbs = new double[in.readByte()];
+			for (int i = 0; i < thumbs.length; i++) {
+				thumbs[i] = in.readDouble();
+			}
+		}
+		superImmediateMode = (flags & SERIAL_SUPER_IMMEDIATE) != 0;
+		superImmediateCoalescing = (flags & SERIAL_COALESCING) != 0;
+		compactLabels = (flags & SERIAL_COMPACT_LABELS) != 0;
+		deltaPainting = (flags & SERIAL_DELTA_PAINTING) != 0;
+		frameRendering = (flags & SERIAL_FRAME_RENDERING) != 0;
+		canvasRendering = (flags & SERIAL_CANVAS_RENDERING) != 0;
+		instrumentationEnabled = (flags & SERIAL_INSTRUMENTATION) != 0;
+		countPreview = (flags & SERIAL_COUNT_PREVIEW) != 0;
+		autoDensity = (flags & SERIAL_AUTO_DENSITY) != 0;
+		zoomable = (flags & SERIAL_ZOOMABLE) != 0;
+		timeAxis = (flags & SERIAL_TIME_AXIS) != 0;
+		configurationMissing = (flags & SERIAL_CONFIGURATION_MISSING) != 0;
+		clientInitialized = (flags & SERIAL_CLIENT_INITIALIZED) != 0;
+		suppressedChanges = in.readLong();
+		dirty = in.readInt();
+	}
+
+	/**
+	 * The type of {@link #getValue()} and of a bound data source. Without a
+	 * data source the superclass holds the value as the equal {@link Range}.
+	 */
+	@Override
+	public Class<?> getType() {
+		return DoublePair.class;
+	}
+
+	/**
+	 * The number of tick marks to show.
+	 */
+	public void setNumberOfTicks(int numTicks) {
+		if (this.numTicks == numTicks) {
+			suppressedChanges++;
+			return;
+		}
+		this.numTicks = numTicks;
+		markDirty(DIRTY_TICKS);
+	}
+
+	public int getNumberTicks() {
+		return numTicks;
+	}
+
+	/**
+	 * The number of labels to show.
+	 */
+	public void setNumberOfLabels(int numLabels) {
+		if (this.numLabels == numLabels) {
+			suppressedChanges++;
+			return;
+		}
+		this.numLabels = numLabels;
+		markDirty(DIRTY_LABELS);
+	}
+
+	public int getNumberLabels() {
+		return numLabels;
+	}
+
+	/**
+	 * If super immediate mode is true, values are immediately received from
+	 * client when dragging with the mouse and when the Arrow keys are pressed
+	 * down
+	 * 
+	 * @param superImmediateMode
+	 */
+	public void setSuperImmediateMode(boolean superImmediateMode) {
+		if (superImmediateMode)
+			this.setImmediate(true);
+		if (this.superImmediateMode == superImmediateMode) {
+			suppressedChanges++;
+			return;
+		}
+		this.superImmediateMode = superImmediateMode;
+		markDirty(DIRTY_SUPER_IMMEDIATE);
+	}
+
+	public boolean isSuperImmediateMode() {
+		return superImmediateMode;
+	}
+
+	/**
+	 * Limits how many values per second the client sends while dragging in
+	 * super immediate mode. The final value is always sent when the knob is
+	 * released.
+	 * 
+	 * @param maxUpdatesPerSecond
+	 *            the maximum send rate, 0 sends on every move
+	 */
+	public void setSuperImmediateRate(int maxUpdatesPerSecond) {
+		if (maxUpdatesPerSecond < 0) {
+			return;
+		}
+		if (this.superImmediateRate == maxUpdatesPerSecond) {
+			suppressedChanges++;
+			return;
+		}
+		this.superImmediateRate = maxUpdatesPerSecond;
+		markDirty(DIRTY_SUPER_IMMEDIATE);
+	}
+
+	public int getSuperImmediateRate() {
+		return superImmediateRate;
+	}
+
+	/**
+	 * If coalescing is on, a move that falls inside the rate limit is not
+	 * dropped: the latest value is sent once the limit allows it. If off, such
+	 * moves are skipped until the next move or the release.
+	 * 
+	 * @param superImmediateCoalescing
+	 */
+	public void setSuperImmediateCoalescing(boolean superImmediateCoalescing) {
+		if (this.superImmediateCoalescing == superImmediateCoalescing) {
+			suppressedChanges++;
+			return;
+		}
+		this.superImmediateCoalescing = superImmediateCoalescing;
+		markDirty(DIRTY_SUPER_IMMEDIATE);
+	}
+
+	public boolean isSuperImmediateCoalescing() {
+		return superImmediateCoalescing;
+	}
+
+	public DoublePair getKnobValues() {
+		return (DoublePair) getValue();
+	}
+
+	/**
+	 * Gets the current knob values without boxing.
+	 * 
+	 * @return the current range
+	 */
+	public Range getRange() {
+		return range;
+	}
+
+	public double getKnobMin() {
+		return range.getMin();
+	}
+
+	public double getKnobMax() {
+		return range.getMax();
+	}
+
+	/**
+	 * Returns the value as a {@link DoublePair}. Without a data source the
+	 * slider holds its value as a {@link Range}; the pair is created the
+	 * first time the value is asked for after a move, and created again if a
+	 * caller changed its fields, so that a change made by one caller is not
+	 * seen by the next. Use {@link #getRange()} or {@link #getKnobMin()} and
+	 * {@link #getKnobMax()} to read the knobs without allocating.
+	 */
+	@Override
+	public Object getValue() {
+		if (getPropertyDataSource() != null) {
+			syncWithDataSource();
+			return super.getValue();
+		}
+		if (pairView == null || pairView.min == null || pairView.max == null
+				|| !range.matches(pairView.min, pairView.max)) {
+			pairView = range.toDoublePair();
+		}
+		return pairView;
+	}
+
+	/**
+	 * Set the value of this Slider.
+	 * 
+	 * @param value
+	 *            New value of Slider. Must be within Sliders range (rangeMin -
+	 *            rangeMax), otherwise throws an exception.
+	 * @param repaintIsNotNeeded
+	 *            If true, client-side is not requested to repaint itself.
+	 * @throws ValueOutOfBoundsException
+	 */
+	protected void setVal(double min, double max, boolean repaintIsNotNeeded) {
+
+		double knobMinValue = toMinDescrete(min);
+		double knobMaxValue = toMaxDescrete(max);
+
+		if (knobMaxValue < knobMinValue) {
+			knobMaxValue = knobMinValue;
+		}
+		// the client shows a value that was clamped away and must be corrected
+		boolean clamped = !(Double.compare(min, knobMinValue) == 0 && Double.compare(max, knobMaxValue) == 0);
+		if (range != null && range.matches(knobMinValue, knobMaxValue)) {
+			if (repaintIsNotNeeded && clamped) {
+				markDirty(DIRTY_KNOBS);
+			} else {
+				suppressedChanges++;
+			}
+			return;
+		}
+		range = fullRange.matches(knobMinValue, knobMaxValue) ? fullRange : Range.valueOf(knobMinValue, knobMaxValue);
+		pairView = null;
+		if (clamped) {
+			repaintIsNotNeeded = false;
+		}
+		if (!repaintIsNotNeeded) {
+			dirty |= DIRTY_KNOBS;
+		}
+		if (thumbs != null) {
+			syncThumbs(repaintIsNotNeeded);
+		}
+
+		// without a data source the superclass holds the immutable range, so
+		// a move allocates no boxed pair; validators and listeners get the
+		// pair from getValue(), and a bound data source gets its own type
+		super.setValue(getPropertyDataSource() == null ? range : range.toDoublePair(), repaintIsNotNeeded);
+		submitAsync();
+	}
+
+	/**
+	 * Hands the value to the asynchronous listeners, after a knob or any
+	 * thumb moved.
+	 */
+	private void submitAsync() {
+		if (!asyncListeners.isEmpty()) {
+			if (asyncDispatcher == null) {
+				asyncDispatcher = new AsyncDispatcher(this, getAsyncExecutor());
+			}
+			asyncDispatcher.submit(range);
+		}
+	}
+
+	public void setKnobValues(double minValue, double maxValue) {
+
+		setVal(minValue, maxValue, false);
+	}
+
+	@Override
+	public void setValue(Object newValue){
+		if (newValue instanceof Range) {
+			Range val = (Range) newValue;
+			setVal(val.getMin(), val.getMax(), false);
+			return;
+		}
+		if (!(newValue instanceof DoublePair)) {
+			throw new IllegalArgumentException("Value of Type " + DoublePair.class.getSimpleName() + " was excepted");
+
+		}
+
+		DoublePair val = (DoublePair) newValue;
+		setVal(val.min, val.max, false);
+	}
+
+	public String getAppendString() {
+		return appendString;
+	}
+
+	public void setAppendString(String appendString) {
+		if (appendString == null ? this.appendString == null : appendString.equals(this.appendString)) {
+			suppressedChanges++;
+			return;
+		}
+		this.appendString = appendString;
+		markDirty(DIRTY_APPEND);
+	}
+
+	public int getLabelDecimals() {
+		return labelDecimals;
+	}
+
+	/**
+	 * Sets the number of decimal places shown in the labels. The append
+	 * string is used as the unit suffix.
+	 * 
+	 * @param labelDecimals
+	 *            the number of decimal places, -1 shows values unformatted
+	 */
+	public void setLabelDecimals(int labelDecimals) {
+		if (labelDecimals < -1) {
+			return;
+		}
+		if (this.labelDecimals == labelDecimals) {
+			suppressedChanges++;
+			return;
+		}
+		this.labelDecimals = labelDecimals;
+		markDirty(DIRTY_FORMAT);
+	}
+
+	public String getLabelPrefix() {
+		return labelPrefix;
+	}
+
+	/**
+	 * Sets a unit or currency shown before each label value.
+	 * 
+	 * @param labelPrefix
+	 */
+	public void setLabelPrefix(String labelPrefix) {
+		if (labelPrefix == null) {
+			labelPrefix = "";
+		}
+		if (labelPrefix.equals(this.labelPrefix)) {
+			suppressedChanges++;
+			return;
+		}
+		this.labelPrefix = labelPrefix;
+		markDirty(DIRTY_FORMAT);
+	}
+
+	public boolean isCompactLabels() {
+		return compactLabels;
+	}
+
+	/**
+	 * If compact labels are on, thousands, millions and billions are shown
+	 * as 1.2k, 3.4M and 5.6G.
+	 * 
+	 * @param compactLabels
+	 */
+	public void setCompactLabels(boolean compactLabels) {
+		if (this.compactLabels == compactLabels) {
+			suppressedChanges++;
+			return;
+		}
+		this.compactLabels = compactLabels;
+		markDirty(DIRTY_FORMAT);
+	}
+
+	/**
+	 * Keeps the knob values in step with a newly bound data source.
+	 */
+	@Override
+	public void setPropertyDataSource(Property newDataSource) {
+		super.setPropertyDataSource(newDataSource);
+		syncWithDataSource();
+	}
+
+	/**
+	 * Keeps the knob values in step with a data source whose value was
+	 * changed by other code.
+	 */
+	@Override
+	public void valueChange(Property.ValueChangeEvent event) {
+		if (syncWithDataSource()) {
+			dirty |= DIRTY_KNOBS;
+		}
+		super.valueChange(event);
+	}
+
+	/**
+	 * Takes the knob values from the bound data source if they differ from
+	 * the current ones. A data source that does not notify its changes is
+	 * read again before painting and when the value is asked for.
+	 *
+	 * @return true if the knobs changed
+	 */
+	private boolean syncWithDataSource() {
+		if (getPropertyDataSource() == null) {
+			return false;
+		}
+		Object value = super.getValue();
+		if (!(value instanceof DoublePair)) {
+			return false;
+		}
+		DoublePair pair = (DoublePair) value;
+		if (pair.min == null || pair.max == null || range != null && range.matches(pair.min, pair.max)) {
+			return false;
+		}
+		range = fullRange.matches(pair.min, pair.max) ? fullRange : Range.valueOf(pair);
+		pairView = null;
+		if (thumbs != null) {
+			syncThumbs(false);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns how many setter calls and client updates were dropped because
+	 * the resulting state was the same as the current one. Dropped updates
+	 * neither fire a value change event nor request a repaint.
+	 * 
+	 * @return the number of suppressed changes
+	 */
+	public long getSuppressedChangeCount() {
+		return suppressedChanges;
+	}
+
+	public void resetSuppressedChangeCount() {
+		suppressedChanges = 0;
 	}
 }
@@ -0,0 +1,93 @@
+package com.lawal;
+
+/**
+ * A set of changes applied to a {@link RangeSliderBar} at once. Setting the
+ * range, step size, ticks, labels and knobs one by one clamps the knobs to
+ * every intermediate range and may fire a value change event and a repaint
+ * request for each call; a batch validates the final settings once, clamps
+ * the knobs only to the final range, fires at most one value change event
+ * and requests one repaint.
+ *
+ * <pre>
+ * slider.beginBatch().setRange(0, 500).setStepSize(5).setKnobValues(100, 200).commit();
+ * </pre>
+ *
+ * Settings not given keep their current values. Nothing is changed until
+ * {@link #commit()}, and nothing at all if the batch is invalid.
+ */
+public final class SliderBatch {
+
+	private final RangeSliderBar slider;
+	private boolean committed = false;
+
+	Double rangeMin;
+	Double rangeMax;
+	Double stepSize;
+	Integer numTicks;
+	Integer numLabels;
+	Double knobMin;
+	Double knobMax;
+
+	SliderBatch(RangeSliderBar slider) {
+		this.slider = slider;
+	}
+
+	public SliderBatch setRange(double rangeMin, double rangeMax) {
+		this.rangeMin = rangeMin;
+		this.rangeMax = rangeMax;
+		return this;
+	}
+
+	public SliderBatch setRangeMin(double rangeMin) {
+		this.rangeMin = rangeMin;
+		return this;
+	}
+
+	public SliderBatch setRangeMax(double rangeMax) {
+		this.rangeMax = rangeMax;
+		return this;
+	}
+
+	public SliderBatch setStepSize(double stepSize) {
+		this.stepSize = stepSize;
+		return this;
+	}
+
+	public SliderBatch setNumberOfTicks(int numTicks) {
+		this.numTicks = numTicks;
+		return this;
+	}
+
+	public SliderBatch setNumberOfLabels(int numLabels) {
+		this.numLabels = numLabels;
+		return this;
+	}
+
+	/**
+	 * Sets the knobs, which are clamped to the final range. Without this the
+	 * current knob values are clamped to it.
+	 */
+	public SliderBatch setKnobValues(double knobMin, double knobMax) {
+		this.knobMin = knobMin;
+		this.knobMax = knobMax;
+		return this;
+	}
+
+	/**
+	 * Applies the changes.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the final range is inverted, or the step size or the
+	 *             number of ticks or labels is negative; the slider is then
+	 *             left unchanged
+	 * @throws IllegalStateException
+	 *             if the batch was committed before
+	 */
+	public void commit() {
+		if (committed) {
+			throw new IllegalStateException("The batch was already committed");
+		}
+		committed = true;
+		slider.commitBatch(this);
+	}
+}
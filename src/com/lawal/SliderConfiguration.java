@@ -0,0 +1,206 @@
+package com.lawal;
+
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vaadin.terminal.PaintTarget;
+import com.vaadin.ui.Window;
+
+/**
+ * An immutable set of display settings that many {@link RangeSliderBar}s can
+ * share: the range, step size, ticks, labels, append string and label format.
+ * A page with hundreds of identically configured sliders gets the settings
+ * painted once; the other sliders only name the configuration, and the
+ * client reuses the label and tick layout it computed for the first one.
+ *
+ * Changing one of these settings through the setters of a slider detaches
+ * that slider from its configuration.
+ */
+@SuppressWarnings("serial")
+public final class SliderConfiguration implements Serializable {
+
+	/*
+	 * Ids are unique within a JVM, the prefix keeps configurations
+	 * deserialized from another JVM apart from the ones created here.
+	 */
+	private static final String ID_PREFIX = Long.toString(new Random().nextInt(Integer.MAX_VALUE), 36) + ".";
+	private static final AtomicLong nextId = new AtomicLong();
+
+	private final String id;
+	private final double rangeMin;
+	private final double rangeMax;
+	private final double stepSize;
+	private final int numTicks;
+	private final int numLabels;
+	private final String appendString;
+	private final int labelDecimals;
+	private final String labelPrefix;
+	private final boolean compactLabels;
+	/**
+	 * The pages that already have this configuration, by their main window.
+	 * The value is the paint target of the full repaint that sent it, or
+	 * TRUE if it was sent in a partial repaint.
+	 */
+	private transient Map<Window, Object> painted;
+
+	/**
+	 * Creates a configuration with unformatted labels.
+	 *
+	 * @param rangeMin
+	 * @param rangeMax
+	 * @param stepSize
+	 * @param numTicks
+	 * @param numLabels
+	 */
+	public SliderConfiguration(double rangeMin, double rangeMax, double stepSize, int numTicks, int numLabels) {
+		this(rangeMin, rangeMax, stepSize, numTicks, numLabels, "", -1, "", false);
+	}
+
+	/**
+	 * @param rangeMin
+	 * @param rangeMax
+	 * @param stepSize
+	 * @param numTicks
+	 * @param numLabels
+	 * @param appendString
+	 *            the string appended to each label
+	 * @param labelDecimals
+	 *            the number of decimal places, -1 shows values unformatted
+	 * @param labelPrefix
+	 *            the string shown before each label value
+	 * @param compactLabels
+	 *            whether thousands, millions and billions are abbreviated
+	 * @see RangeSliderBar#setLabelDecimals(int)
+	 */
+	public SliderConfiguration(double rangeMin, double rangeMax, double stepSize, int numTicks, int numLabels,
+			String appendString, int labelDecimals, String labelPrefix, boolean compactLabels) {
+		if (stepSize < 0) {
+			throw new IllegalArgumentException("stepSize must not be negative");
+		}
+		if (labelDecimals < -1) {
+			throw new IllegalArgumentException("labelDecimals must be -1 or more");
+		}
+		this.id = ID_PREFIX + nextId.incrementAndGet();
+		this.rangeMin = rangeMin;
+		this.rangeMax = rangeMax;
+		this.stepSize = stepSize;
+		this.numTicks = numTicks;
+		this.numLabels = numLabels;
+		this.appendString = appendString == null ? "" : appendString;
+		this.labelDecimals = labelDecimals;
+		this.labelPrefix = labelPrefix == null ? "" : labelPrefix;
+		this.compactLabels = compactLabels;
+	}
+
+	/**
+	 * Creates a configuration holding the current settings of a slider.
+	 *
+	 * @param slider
+	 * @return the configuration
+	 */
+	public static SliderConfiguration fromSlider(RangeSliderBar slider) {
+		return new SliderConfiguration(slider.getRangeMin(), slider.getRangeMax(), slider.getStepSize(),
+				slider.getNumberTicks(), slider.getNumberLabels(), slider.getAppendString(),
+				slider.getLabelDecimals(), slider.getLabelPrefix(), slider.isCompactLabels());
+	}
+
+	public double getRangeMin() {
+		return rangeMin;
+	}
+
+	public double getRangeMax() {
+		return rangeMax;
+	}
+
+	public double getStepSize() {
+		return stepSize;
+	}
+
+	public int getNumberTicks() {
+		return numTicks;
+	}
+
+	public int getNumberLabels() {
+		return numLabels;
+	}
+
+	public String getAppendString() {
+		return appendString;
+	}
+
+	public int getLabelDecimals() {
+		return labelDecimals;
+	}
+
+	public String getLabelPrefix() {
+		return labelPrefix;
+	}
+
+	public boolean isCompactLabels() {
+		return compactLabels;
+	}
+
+	/**
+	 * The id the client knows this configuration by.
+	 */
+	String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns whether the settings must be painted for a slider on the page
+	 * of the given window, and records them as painted if so. A full repaint
+	 * starts the page over, so the settings are then sent once more, with
+	 * the first slider painted into that target.
+	 *
+	 * @param window
+	 *            the window the slider is painted in
+	 * @param target
+	 * @return true if the client does not have the settings yet
+	 */
+	synchronized boolean needsPaint(Window window, PaintTarget target) {
+		if (window == null) {
+			return true;
+		}
+		// sub windows are shown on the page of their parent
+		while (window.getParent() != null) {
+			window = window.getParent();
+		}
+		if (painted == null) {
+			painted = new WeakHashMap<Window, Object>();
+		}
+		Object marker = painted.get(window);
+		if (target.isFullRepaint()) {
+			if (marker instanceof Reference && ((Reference<?>) marker).get() == target) {
+				return false;
+			}
+			painted.put(window, new WeakReference<PaintTarget>(target));
+			return true;
+		}
+		if (marker != null) {
+			return false;
+		}
+		painted.put(window, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * Returns the settings in the order the client reads them.
+	 */
+	String[] encode() {
+		return new String[] { String.valueOf(rangeMin), String.valueOf(Math.max(rangeMin, rangeMax)),
+				String.valueOf(stepSize), String.valueOf(numTicks), String.valueOf(numLabels), appendString,
+				String.valueOf(labelDecimals), labelPrefix, String.valueOf(compactLabels) };
+	}
+
+	@Override
+	public String toString() {
+		return "SliderConfiguration [ id=" + id + ", rangeMin=" + rangeMin + ", rangeMax=" + rangeMax
+				+ ", stepSize=" + stepSize + ", numTicks=" + numTicks + ", numLabels=" + numLabels + "]";
+	}
+}
@@ -0,0 +1,103 @@
+package com.lawal;
+
+import java.io.Serializable;
+
+/**
+ * The saved state of a {@link RangeSliderBar}: its range, step size and knob
+ * values. Presets are immutable and are kept by a {@link PresetStore}.
+ */
+@SuppressWarnings("serial")
+public final class SliderPreset implements Serializable {
+
+	private final double rangeMin;
+	private final double rangeMax;
+	private final double stepSize;
+	private final double knobMin;
+	private final double knobMax;
+
+	public SliderPreset(double rangeMin, double rangeMax, double stepSize, double knobMin, double knobMax) {
+		if (rangeMax < rangeMin) {
+			throw new IllegalArgumentException("rangeMax must not be less than rangeMin");
+		}
+		if (stepSize < 0) {
+			throw new IllegalArgumentException("stepSize must not be negative");
+		}
+		if (knobMax < knobMin) {
+			throw new IllegalArgumentException("knobMax must not be less than knobMin");
+		}
+		this.rangeMin = rangeMin;
+		this.rangeMax = rangeMax;
+		this.stepSize = stepSize;
+		this.knobMin = knobMin;
+		this.knobMax = knobMax;
+	}
+
+	/**
+	 * Creates a preset holding the current state of a slider.
+	 *
+	 * @param slider
+	 * @return the preset
+	 */
+	public static SliderPreset fromSlider(RangeSliderBar slider) {
+		return new SliderPreset(slider.getRangeMin(), slider.getRangeMax(), slider.getStepSize(),
+				slider.getKnobMin(), slider.getKnobMax());
+	}
+
+	/**
+	 * Applies the preset to a slider in one batch, firing at most one value
+	 * change event.
+	 *
+	 * @param slider
+	 */
+	public void applyTo(RangeSliderBar slider) {
+		slider.beginBatch().setRange(rangeMin, rangeMax).setStepSize(stepSize).setKnobValues(knobMin, knobMax)
+				.commit();
+	}
+
+	public double getRangeMin() {
+		return rangeMin;
+	}
+
+	public double getRangeMax() {
+		return rangeMax;
+	}
+
+	public double getStepSize() {
+		return stepSize;
+	}
+
+	public double getKnobMin() {
+		return knobMin;
+	}
+
+	public double getKnobMax() {
+		return knobMax;
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(rangeMin);
+		bits = 31 * bits + Double.doubleToLongBits(rangeMax);
+		bits = 31 * bits + Double.doubleToLongBits(stepSize);
+		bits = 31 * bits + Double.doubleToLongBits(knobMin);
+		bits = 31 * bits + Double.doubleToLongBits(knobMax);
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SliderPreset)) {
+			return false;
+		}
+		SliderPreset other = (SliderPreset) obj;
+		return Double.compare(rangeMin, other.rangeMin) == 0 && Double.compare(rangeMax, other.rangeMax) == 0
+				&& Double.compare(stepSize, other.stepSize) == 0 && Double.compare(knobMin, other.knobMin) == 0
+				&& Double.compare(knobMax, other.knobMax) == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "SliderPreset [ rangeMin=" + rangeMin + ", rangeMax=" + rangeMax + ", stepSize=" + stepSize
+				+ ", knobMin=" + knobMin + ", knobMax=" + knobMax + "]";
+	}
+}
@@ -0,0 +1,199 @@
+package com.lawal.client.ui;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.google.gwt.i18n.client.DateTimeFormat;
+
+/**
+ * The marks of a zoomable slider for one visible window: values at a level
+ * of detail matching the width of the window, and only those inside it.
+ * Numbers are marked at 1, 2 or 5 times a power of ten. Times, in
+ * milliseconds since the epoch, are marked at whole seconds, minutes, hours,
+ * days, months or years of the local calendar, with a label format to match.
+ */
+class AxisScale {
+
+	private static final long SECOND = 1000L;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long HOUR = 60 * MINUTE;
+	private static final long DAY = 24 * HOUR;
+	/**
+	 * The average month, only used to pick a step.
+	 */
+	private static final long MONTH = 2629746000L;
+
+	private static final long[] TIME_STEPS = { SECOND, 2 * SECOND, 5 * SECOND, 10 * SECOND, 15 * SECOND,
+			30 * SECOND, MINUTE, 2 * MINUTE, 5 * MINUTE, 10 * MINUTE, 15 * MINUTE, 30 * MINUTE, HOUR, 2 * HOUR,
+			3 * HOUR, 6 * HOUR, 12 * HOUR, DAY, 2 * DAY, 7 * DAY, 14 * DAY };
+	private static final int[] MONTH_STEPS = { 1, 2, 3, 6, 12 };
+
+	private final double[] values;
+	private final DateTimeFormat dateFormat;
+	/**
+	 * The inputs the marks were created for.
+	 */
+	private double min;
+	private double max;
+	private int maxMarks;
+	private boolean time;
+
+	private AxisScale(List<Double> values, DateTimeFormat dateFormat) {
+		this.values = new double[values.size()];
+		for (int i = 0; i < this.values.length; i++) {
+			this.values[i] = values.get(i);
+		}
+		this.dateFormat = dateFormat;
+	}
+
+	/**
+	 * Create the marks for a window.
+	 *
+	 * @param min
+	 *            the smallest visible value
+	 * @param max
+	 *            the biggest visible value
+	 * @param maxMarks
+	 *            the most marks wanted, there may be one more when both ends
+	 *            fall on a mark
+	 * @param time
+	 *            true if values are milliseconds since the epoch
+	 * @return the scale
+	 */
+	static AxisScale create(double min, double max, int maxMarks, boolean time) {
+		AxisScale scale;
+		if (maxMarks <= 0 || !(max > min)) {
+			scale = new AxisScale(new ArrayList<Double>(), null);
+		} else if (time && (max - min) / maxMarks >= SECOND) {
+			scale = createTime(min, max, maxMarks, (max - min) / maxMarks);
+		} else {
+			scale = createNumber(min, max, maxMarks, (max - min) / maxMarks);
+		}
+		scale.min = min;
+		scale.max = max;
+		scale.maxMarks = maxMarks;
+		scale.time = time;
+		return scale;
+	}
+
+	/**
+	 * Return true if the scale was created with these inputs, so that it
+	 * can be drawn again without being created anew.
+	 */
+	boolean isFor(double min, double max, int maxMarks, boolean time) {
+		return this.min == min && this.max == max && this.maxMarks == maxMarks && this.time == time;
+	}
+
+	private static AxisScale createNumber(double min, double max, int maxMarks, double rawStep) {
+		double magnitude = Math.pow(10, Math.floor(Math.log(rawStep) / Math.log(10)));
+		double normalized = rawStep / magnitude;
+		double step = (normalized <= 1 ? 1 : normalized <= 2 ? 2 : normalized <= 5 ? 5 : 10) * magnitude;
+		// round away the noise of multiplying fractional steps
+		double scale = magnitude < 1 ? Math.pow(10, Math.round(-Math.log(magnitude) / Math.log(10))) : 1;
+		List<Double> values = new ArrayList<Double>();
+		for (double k = Math.ceil(min / step); values.size() <= maxMarks; k++) {
+			double value = k * step;
+			if (scale > 1) {
+				value = Math.round(value * scale) / scale;
+			}
+			if (value > max) {
+				break;
+			}
+			// no -0 labels
+			values.add(value == 0 ? 0 : value);
+		}
+		return new AxisScale(values, null);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static AxisScale createTime(double min, double max, int maxMarks, double rawStep) {
+		List<Double> values = new ArrayList<Double>();
+		if (rawStep <= TIME_STEPS[TIME_STEPS.length - 1]) {
+			long step = TIME_STEPS[TIME_STEPS.length - 1];
+			for (long candidate : TIME_STEPS) {
+				if (candidate >= rawStep) {
+					step = candidate;
+					break;
+				}
+			}
+			if (step < DAY) {
+				// align to the local clock, whose offset may not be whole hours
+				long offset = -new Date((long) min).getTimezoneOffset() * MINUTE;
+				long first = (long) Math.ceil((min + offset) / step) * step - offset;
+				for (long value = first; value <= max && values.size() <= maxMarks; value += step) {
+					values.add((double) value);
+				}
+				return new AxisScale(values, DateTimeFormat.getFormat(step < MINUTE ? "HH:mm:ss" : "HH:mm"));
+			}
+			// whole days, stepped on the calendar so that daylight saving
+			// time does not shift the marks off midnight
+			int days = (int) (step / DAY);
+			Date date = new Date((long) min);
+			date = new Date(date.getYear(), date.getMonth(), date.getDate());
+			if (date.getTime() < min) {
+				date.setDate(date.getDate() + 1);
+			}
+			while (date.getTime() <= max && values.size() <= maxMarks) {
+				values.add((double) date.getTime());
+				date.setDate(date.getDate() + days);
+			}
+			return new AxisScale(values, DateTimeFormat.getFormat("d MMM"));
+		}
+		// months and years
+		int months;
+		if (rawStep <= MONTH * MONTH_STEPS[MONTH_STEPS.length - 1]) {
+			months = MONTH_STEPS[MONTH_STEPS.length - 1];
+			for (int candidate : MONTH_STEPS) {
+				if (candidate * MONTH >= rawStep) {
+					months = candidate;
+					break;
+				}
+			}
+		} else {
+			// 1, 2 or 5 times a power of ten years
+			double years = rawStep / (12 * MONTH);
+			double magnitude = Math.pow(10, Math.floor(Math.log(years) / Math.log(10)));
+			double normalized = years / magnitude;
+			months = 12 * (int) Math.round((normalized <= 1 ? 1 : normalized <= 2 ? 2 : normalized <= 5 ? 5 : 10)
+					* magnitude);
+		}
+		Date start = new Date((long) min);
+		int month = start.getYear() * 12 + start.getMonth();
+		// the first month at or after min that is a multiple of the step
+		month = (int) Math.ceil((double) month / months) * months;
+		Date date = new Date(month / 12, month % 12, 1);
+		if (date.getTime() < min) {
+			month += months;
+			date = new Date(month / 12, month % 12, 1);
+		}
+		while (date.getTime() <= max && values.size() <= maxMarks) {
+			values.add((double) date.getTime());
+			month += months;
+			date = new Date(month / 12, month % 12, 1);
+		}
+		return new AxisScale(values, DateTimeFormat.getFormat(months < 12 ? "MMM yyyy" : "yyyy"));
+	}
+
+	int size() {
+		return values.length;
+	}
+
+	double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Return true if the marks are times with a format of their own.
+	 */
+	boolean isTime() {
+		return dateFormat != null;
+	}
+
+	/**
+	 * Format a time mark.
+	 */
+	String formatTime(double value) {
+		return dateFormat.format(new Date((long) value));
+	}
+}
@@ -0,0 +1,224 @@
+package com.lawal.client.ui;
+
+import com.google.gwt.canvas.client.Canvas;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.Element;
+
+/**
+ * Draws the line, progress, ticks, labels and knobs of a slider into a
+ * single canvas instead of one element each, so a page of many sliders does
+ * not pay for the elements and their style recalculation. Sizes and colors
+ * follow the default theme in rangesliderbar.css.
+ *
+ * Moving a knob repaints only the strip between its old and new position;
+ * the rest of the canvas is kept. Positions are in pixels from the left of
+ * the shell, except tick and label offsets, which are relative to the line
+ * like the offsets of the element rendering.
+ */
+class CanvasRenderer {
+
+	static final int KNOB_WIDTH = 11;
+	private static final int KNOB_HEIGHT = 21;
+	private static final int KNOB_TOP = 16;
+	private static final int LINE_TOP = 24;
+	private static final int LINE_HEIGHT = 6;
+	private static final int TICK_TOP = 13;
+	private static final int TICK_HEIGHT = 10;
+	private static final int LABEL_TOP = 4;
+	private static final String LABEL_FONT = "10px sans-serif";
+
+	private static final String LINE_COLOR = "rgb(138, 226, 52)";
+	private static final String LINE_SLIDING_COLOR = "#32CD32";
+	private static final String PROGRESS_COLOR = "#F5FFFA";
+	private static final String TICK_COLOR = "black";
+	private static final String LABEL_COLOR = "black";
+	private static final String KNOB_MIN_COLOR = "#d9453c";
+	private static final String KNOB_MAX_COLOR = "#3c6fd9";
+	private static final String FOCUS_COLOR = "#333333";
+
+	private final Canvas canvas;
+	private final Context2d context;
+	private int width = 0;
+	private int height = 0;
+	private int lineLeft = 0;
+	private int lineWidth = 0;
+	private int[] tickOffsets = new int[0];
+	private String[] labelTexts = new String[0];
+	private int[] labelOffsets = new int[0];
+	/**
+	 * The knob centers, the min knob first and the max knob last.
+	 */
+	private int[] knobCenters = new int[0];
+	private boolean thumbs = false;
+	private boolean enabled = true;
+	private boolean focused = false;
+	private boolean sliding = false;
+
+	private CanvasRenderer(Canvas canvas) {
+		this.canvas = canvas;
+		this.context = canvas.getContext2d();
+		DOM.setStyleAttribute(canvas.getElement(), "position", "absolute");
+		DOM.setStyleAttribute(canvas.getElement(), "left", "0px");
+		DOM.setStyleAttribute(canvas.getElement(), "top", "0px");
+	}
+
+	/**
+	 * @return a renderer, or null if the browser has no canvas
+	 */
+	static CanvasRenderer createIfSupported() {
+		Canvas canvas = Canvas.createIfSupported();
+		return canvas == null ? null : new CanvasRenderer(canvas);
+	}
+
+	Element getElement() {
+		return canvas.getElement();
+	}
+
+	/**
+	 * Set the size of the shell and the position of the line in it.
+	 */
+	void setLayout(int width, int height, int lineLeft, int lineWidth) {
+		if (width == this.width && height == this.height && lineLeft == this.lineLeft
+				&& lineWidth == this.lineWidth) {
+			return;
+		}
+		if (width != this.width || height != this.height) {
+			this.width = width;
+			this.height = height;
+			// resizing the coordinate space clears the canvas
+			canvas.setCoordinateSpaceWidth(width);
+			canvas.setCoordinateSpaceHeight(height);
+			canvas.setPixelSize(width, height);
+		}
+		this.lineLeft = lineLeft;
+		this.lineWidth = lineWidth;
+		repaintAll();
+	}
+
+	/**
+	 * Return the width of a label text in the label font.
+	 */
+	int measureLabel(String text) {
+		context.setFont(LABEL_FONT);
+		return (int) Math.ceil(context.measureText(text).getWidth());
+	}
+
+	/**
+	 * Set the ticks and labels, with their left offsets relative to the line.
+	 */
+	void setMarks(int[] tickOffsets, String[] labelTexts, int[] labelOffsets) {
+		this.tickOffsets = tickOffsets;
+		this.labelTexts = labelTexts;
+		this.labelOffsets = labelOffsets;
+		repaintAll();
+	}
+
+	/**
+	 * Move the knobs, repainting the strips they left and entered.
+	 *
+	 * @param centers
+	 *            the knob centers, the min knob first and the max knob last
+	 * @param thumbs
+	 *            true if the knobs are the thumbs of a multi thumb slider
+	 */
+	void setKnobs(int[] centers, boolean thumbs) {
+		int[] old = knobCenters;
+		knobCenters = centers;
+		if (old.length != centers.length || this.thumbs != thumbs) {
+			this.thumbs = thumbs;
+			repaintAll();
+			return;
+		}
+		int from = Integer.MAX_VALUE;
+		int to = Integer.MIN_VALUE;
+		for (int i = 0; i < centers.length; i++) {
+			if (old[i] != centers[i]) {
+				from = Math.min(from, Math.min(old[i], centers[i]) - KNOB_WIDTH / 2 - 1);
+				to = Math.max(to, Math.max(old[i], centers[i]) + KNOB_WIDTH / 2 + 2);
+			}
+		}
+		if (from < to) {
+			repaint(from, to);
+		}
+	}
+
+	void setEnabled(boolean enabled) {
+		if (this.enabled != enabled) {
+			this.enabled = enabled;
+			repaintAll();
+		}
+	}
+
+	void setFocused(boolean focused) {
+		if (this.focused != focused) {
+			this.focused = focused;
+			repaintAll();
+		}
+	}
+
+	void setSliding(boolean sliding) {
+		if (this.sliding != sliding) {
+			this.sliding = sliding;
+			repaintAll();
+		}
+	}
+
+	private void repaintAll() {
+		repaint(0, width);
+	}
+
+	/**
+	 * Clear and draw a vertical strip of the canvas. Everything is drawn with
+	 * the strip as the clip region, so the browser only rasterizes the strip.
+	 */
+	private void repaint(int from, int to) {
+		from = Math.max(0, from);
+		to = Math.min(width, to);
+		if (from >= to || height <= 0) {
+			return;
+		}
+		context.save();
+		context.beginPath();
+		context.rect(from, 0, to - from, height);
+		context.clip();
+		context.clearRect(from, 0, to - from, height);
+		draw();
+		context.restore();
+	}
+
+	private void draw() {
+		context.setGlobalAlpha(enabled ? 1 : 0.5);
+		context.setFillStyle(TICK_COLOR);
+		for (int offset : tickOffsets) {
+			context.fillRect(lineLeft + offset, TICK_TOP, 1, TICK_HEIGHT);
+		}
+		context.setFont(LABEL_FONT);
+		context.setTextBaseline(Context2d.TextBaseline.TOP);
+		context.setFillStyle(LABEL_COLOR);
+		for (int i = 0; i < labelTexts.length; i++) {
+			context.fillText(labelTexts[i], lineLeft + labelOffsets[i], LABEL_TOP);
+		}
+		// the line shows the selection, the progress covers the rest
+		context.setFillStyle(sliding ? LINE_SLIDING_COLOR : LINE_COLOR);
+		context.fillRect(lineLeft, LINE_TOP, lineWidth, LINE_HEIGHT);
+		if (knobCenters.length > 0) {
+			int min = knobCenters[0];
+			int max = knobCenters[knobCenters.length - 1];
+			context.setFillStyle(PROGRESS_COLOR);
+			context.fillRect(lineLeft, LINE_TOP, Math.max(0, min - lineLeft), LINE_HEIGHT);
+			context.fillRect(max, LINE_TOP, Math.max(0, lineLeft + lineWidth - max), LINE_HEIGHT);
+		}
+		for (int i = 0; i < knobCenters.length; i++) {
+			int left = knobCenters[i] - KNOB_WIDTH / 2;
+			boolean min = i == 0 && !thumbs;
+			context.setFillStyle(min ? KNOB_MIN_COLOR : KNOB_MAX_COLOR);
+			context.fillRect(left, KNOB_TOP, KNOB_WIDTH, KNOB_HEIGHT);
+			if (focused) {
+				context.setStrokeStyle(FOCUS_COLOR);
+				context.setLineWidth(1);
+				context.strokeRect(left + 0.5, KNOB_TOP + 0.5, KNOB_WIDTH - 1, KNOB_HEIGHT - 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.lawal.client.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.i18n.client.NumberFormat;
+
+/**
+ * A label formatter configured from the server with a fixed number of
+ * decimal places, a prefix, a suffix and optional compact notation (1.2k,
+ * 3.4M). The number format is compiled once and every formatted value is
+ * cached, so redrawing the same labels does not format them again.
+ */
+public class NumberLabelFormatter extends LabelFormatter {
+	/**
+	 * The number of formatted labels kept before the cache is cleared.
+	 */
+	private static final int MAX_CACHED_LABELS = 256;
+
+	private final NumberFormat format;
+	private final String prefix;
+	private final String suffix;
+	private final boolean compact;
+	private final Map<Double, String> labels = new HashMap<Double, String>();
+
+	/**
+	 * @param decimals
+	 *            the number of decimal places, or -1 to show the value as is
+	 * @param prefix
+	 *            the text put before the value
+	 * @param suffix
+	 *            the text put after the value
+	 * @param compact
+	 *            true to show thousands, millions and billions as k, M and G
+	 */
+	public NumberLabelFormatter(int decimals, String prefix, String suffix, boolean compact) {
+		this.prefix = prefix == null ? "" : prefix;
+		this.suffix = suffix == null ? "" : suffix;
+		this.compact = compact;
+		if (decimals >= 0) {
+			StringBuilder pattern = new StringBuilder("0");
+			for (int i = 0; i < decimals; i++) {
+				pattern.append(i == 0 ? ".0" : "0");
+			}
+			format = NumberFormat.getFormat(pattern.toString());
+		} else if (compact) {
+			format = NumberFormat.getFormat("0.#");
+		} else {
+			format = null;
+		}
+	}
+
+	@Override
+	public String formatLabel(VRangeSliderBar slider, double value) {
+		String label = labels.get(value);
+		if (label == null) {
+			if (labels.size() >= MAX_CACHED_LABELS) {
+				labels.clear();
+			}
+			label = prefix + formatNumber(value) + suffix;
+			labels.put(value, label);
+		}
+		return label;
+	}
+
+	private String formatNumber(double value) {
+		String unit = "";
+		if (compact) {
+			double abs = Math.abs(value);
+			if (abs >= 1e9) {
+				value /= 1e9;
+				unit = "G";
+			} else if (abs >= 1e6) {
+				value /= 1e6;
+				unit = "M";
+			} else if (abs >= 1e3) {
+				value /= 1e3;
+				unit = "k";
+			}
+		}
+		if (format == null) {
+			return String.valueOf(value) + unit;
+		}
+		return format.format(value) + unit;
+	}
+}
@@ -0,0 +1,149 @@
+package com.lawal.client.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The client side of a slider configuration shared by many sliders. The
+ * server sends the settings with the first slider that uses them and only
+ * the id with the others. Label and tick layouts computed by one slider are
+ * kept per line width, so that other sliders of the same width take the
+ * texts and offsets from here instead of formatting and measuring again.
+ *
+ * A configuration is kept while an attached slider uses it. When the last
+ * one is detached it is dropped; a slider that names it later asks the
+ * server for the settings again.
+ */
+public class SharedConfiguration {
+
+	/**
+	 * The number of line widths a layout is kept for.
+	 */
+	private static final int MAX_CACHED_LAYOUTS = 8;
+
+	private static final Map<String, SharedConfiguration> configurations = new HashMap<String, SharedConfiguration>();
+
+	/**
+	 * Label and tick offsets relative to the left end of the line. The
+	 * arrays are filled by the first slider that draws them.
+	 */
+	static class Layout {
+		String[] labelTexts;
+		int[] labelOffsets;
+		int[] tickOffsets;
+	}
+
+	private final String id;
+	/**
+	 * The number of attached sliders using this configuration.
+	 */
+	private int users = 0;
+
+	final double rangeMin;
+	final double rangeMax;
+	final double stepSize;
+	final int numTicks;
+	final int numLabels;
+	final String appendString;
+	final int labelDecimals;
+	final String labelPrefix;
+	final boolean compactLabels;
+
+	private LabelFormatter labelFormatter;
+	private final Map<Integer, Layout> layouts = new HashMap<Integer, Layout>();
+
+	private SharedConfiguration(String id, String[] data) {
+		this.id = id;
+		rangeMin = Double.parseDouble(data[0]);
+		rangeMax = Double.parseDouble(data[1]);
+		stepSize = Double.parseDouble(data[2]);
+		numTicks = Integer.parseInt(data[3]);
+		numLabels = Integer.parseInt(data[4]);
+		appendString = data[5];
+		labelDecimals = Integer.parseInt(data[6]);
+		labelPrefix = data[7];
+		compactLabels = Boolean.parseBoolean(data[8]);
+	}
+
+	/**
+	 * Stores the settings sent by the server under their id. Settings already
+	 * stored under the id are kept, since a configuration never changes.
+	 *
+	 * @param id
+	 * @param data
+	 *            the settings as painted by the server
+	 */
+	static void register(String id, String[] data) {
+		if (!configurations.containsKey(id)) {
+			configurations.put(id, new SharedConfiguration(id, data));
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return the configuration, or null if the server has not sent it
+	 */
+	static SharedConfiguration get(String id) {
+		return configurations.get(id);
+	}
+
+	/**
+	 * Counts an attached slider using this configuration, registering it
+	 * again if it was dropped meanwhile.
+	 */
+	void acquire() {
+		users++;
+		if (!configurations.containsKey(id)) {
+			configurations.put(id, this);
+		}
+	}
+
+	/**
+	 * Counts a slider that was detached or stopped using this configuration,
+	 * dropping the configuration if no slider uses it any more.
+	 */
+	void release() {
+		if (--users <= 0) {
+			users = 0;
+			if (configurations.get(id) == this) {
+				configurations.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the label formatter shared by the sliders using this
+	 * configuration.
+	 */
+	LabelFormatter getLabelFormatter() {
+		if (labelFormatter == null) {
+			if (labelDecimals >= 0 || labelPrefix.length() > 0 || compactLabels) {
+				labelFormatter = new NumberLabelFormatter(labelDecimals, labelPrefix, appendString, compactLabels);
+			} else {
+				labelFormatter = LabelFormatter.getDefault();
+			}
+		}
+		return labelFormatter;
+	}
+
+	/**
+	 * Returns the layout for a line width, creating an empty one if needed.
+	 * Disabled sliders use other styles, so they get their own layouts.
+	 *
+	 * @param lineWidth
+	 * @param enabled
+	 * @return the layout
+	 */
+	Layout getLayout(int lineWidth, boolean enabled) {
+		Integer key = Integer.valueOf(enabled ? lineWidth : -lineWidth - 1);
+		Layout layout = layouts.get(key);
+		if (layout == null) {
+			if (layouts.size() >= MAX_CACHED_LAYOUTS) {
+				layouts.clear();
+			}
+			layout = new Layout();
+			layouts.put(key, layout);
+		}
+		return layout;
+	}
+}
@@ -0,0 +1,116 @@
+package com.lawal.client.ui;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.user.client.Event;
+
+/**
+ * Counters kept by a {@link VRangeSliderBar} while instrumentation is turned
+ * on from the server: browser events per type, time spent drawing, values
+ * sent and the time from a send to the next update from the server. The
+ * widget holds no instance while instrumentation is off, so the only cost
+ * then is a null check.
+ */
+public class SliderInstrumentation {
+
+	public static final int DRAW_KNOBS = 0;
+	public static final int DRAW_LABELS = 1;
+	public static final int DRAW_TICKS = 2;
+
+	private static final String[] DRAW_NAMES = { "knobs", "labels", "ticks" };
+
+	private static final int[] EVENT_TYPES = { Event.ONMOUSEDOWN, Event.ONMOUSEUP, Event.ONMOUSEMOVE,
+			Event.ONTOUCHSTART, Event.ONTOUCHMOVE, Event.ONTOUCHEND, Event.ONKEYDOWN, Event.ONKEYUP,
+			Event.ONMOUSEWHEEL, Event.ONFOCUS, Event.ONBLUR };
+
+	private static final String[] EVENT_NAMES = { "mousedown", "mouseup", "mousemove", "touchstart", "touchmove",
+			"touchend", "keydown", "keyup", "mousewheel", "focus", "blur", "other" };
+
+	private final int[] events = new int[EVENT_NAMES.length];
+	private final int[] draws = new int[DRAW_NAMES.length];
+	private final double[] drawTime = new double[DRAW_NAMES.length];
+	private int sends = 0;
+	private int roundTrips = 0;
+	private double roundTripTime = 0;
+	private double maxRoundTripTime = 0;
+	/**
+	 * The time of the first send not yet answered by the server, or -1.
+	 */
+	private double sendTime = -1;
+
+	/**
+	 * Count a browser event.
+	 *
+	 * @param type
+	 *            the event type as returned by DOM.eventGetType
+	 */
+	public void eventReceived(int type) {
+		for (int i = 0; i < EVENT_TYPES.length; i++) {
+			if (EVENT_TYPES[i] == type) {
+				events[i]++;
+				return;
+			}
+		}
+		events[EVENT_NAMES.length - 1]++;
+	}
+
+	/**
+	 * Record a finished draw call.
+	 *
+	 * @param kind
+	 *            one of DRAW_KNOBS, DRAW_LABELS and DRAW_TICKS
+	 * @param start
+	 *            the time the draw started, from {@link Duration}
+	 */
+	public void drawn(int kind, double start) {
+		draws[kind]++;
+		drawTime[kind] += Duration.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Record a value sent with updateVariable.
+	 */
+	public void sent() {
+		sends++;
+		if (sendTime < 0) {
+			sendTime = Duration.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Record an update from the server, closing the round trip of a pending
+	 * send.
+	 */
+	public void updateReceived() {
+		if (sendTime < 0) {
+			return;
+		}
+		double time = Duration.currentTimeMillis() - sendTime;
+		sendTime = -1;
+		roundTrips++;
+		roundTripTime += time;
+		maxRoundTripTime = Math.max(maxRoundTripTime, time);
+	}
+
+	/**
+	 * Return the counters as name=value pairs, with times in whole
+	 * milliseconds.
+	 *
+	 * @return the counters
+	 */
+	public String[] getCounters() {
+		String[] counters = new String[EVENT_NAMES.length + 2 * DRAW_NAMES.length + 4];
+		int i = 0;
+		for (int e = 0; e < EVENT_NAMES.length; e++) {
+			counters[i++] = "event." + EVENT_NAMES[e] + "=" + events[e];
+		}
+		for (int d = 0; d < DRAW_NAMES.length; d++) {
+			counters[i++] = "draw." + DRAW_NAMES[d] + ".count=" + draws[d];
+			counters[i++] = "draw." + DRAW_NAMES[d] + ".ms=" + Math.round(drawTime[d]);
+		}
+		counters[i++] = "send.count=" + sends;
+		counters[i++] = "roundtrip.count=" + roundTrips;
+		counters[i++] = "roundtrip.ms=" + Math.round(roundTripTime);
+		counters[i++] = "roundtrip.maxms=" + Math.round(maxRoundTripTime);
+		return counters;
+	}
+}
@@ -15,7 +15,13 @@
 package com.lawal.client.ui;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.event.dom.client.KeyCodes;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Element;
@@ -34,17 +40,91 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	private static final String SLIDER_BAR_LINE = "gwt-VRangeSliderBar-line";
 	private static final String KNOB_MAX_CLASSNAME = "gwt-VRangeSliderBar-knobmax";
 	private static final String KNOB_MIN_CLASSNAME = "gwt-VRangeSliderBar-knobmin";
+	private static final String THUMB_CLASSNAME = "gwt-VRangeSliderBar-thumb";
 
 	private static final String CLASSNAME = "gwt-VRangeSliderBar-shell";
+	/**
+	 * The time without mouse moves after which a dragged knob counts as
+	 * standing still, in milliseconds.
+	 */
+	private static final int VELOCITY_TIMEOUT = 150;
+	/**
+	 * The number of label widths kept before the cache is cleared.
+	 */
+	private static final int MAX_CACHED_LABEL_WIDTHS = 512;
+	/**
+	 * The biggest magnitude below which every whole number is a double.
+	 */
+	private static final double MAX_EXACT = 9007199254740992.0;
+	/**
+	 * The factor one ctrl+wheel notch zooms the window by.
+	 */
+	private static final double ZOOM_FACTOR = 1.25;
+	/*
+	 * Keyboard stepping: the delay before a held key repeats, the first and
+	 * the shortest delay between repeats, the repeats after which the steps
+	 * per repeat double, and the most they are multiplied by.
+	 */
+	private static final int KEY_REPEAT_START = 400;
+	private static final int KEY_REPEAT_DELAY = 120;
+	private static final int KEY_REPEAT_MIN_DELAY = 20;
+	private static final int KEY_ACCELERATION_RUNS = 25;
+	private static final int KEY_MAX_ACCELERATION = 8;
+	/**
+	 * The time without wheel events after which the value is sent, in
+	 * milliseconds.
+	 */
+	private static final int WHEEL_IDLE = 300;
+	/*
+	 * Automatic density: the line width is rounded down to a bucket, labels
+	 * keep a gap between them, ticks a minimum spacing, and neither gets
+	 * more elements than the cap.
+	 */
+	private static final int WIDTH_BUCKET = 50;
+	private static final int LABEL_GAP = 16;
+	private static final int MIN_TICK_SPACING = 8;
+	private static final int MAX_AUTO_MARKS = 100;
+	/**
+	 * A text as wide as the widest time label.
+	 */
+	private static final String TIME_LABEL_SAMPLE = "00:00:00";
+
+	private static final String HISTOGRAM_CLASSNAME = "gwt-VRangeSliderBar-histogram";
+	private static final String BAR_CLASSNAME = "gwt-VRangeSliderBar-bar";
+	private static final String BAR_SELECTED_CLASSNAME = BAR_CLASSNAME + " " + BAR_CLASSNAME + "-selected";
+	private static final String COUNT_CLASSNAME = "gwt-VRangeSliderBar-count";
 	/**
 	 * The timer used to continue to shift the knob if the user holds down a
-	 * key.
+	 * key, created on the first key press.
 	 */
-	private KeyTimer keyTimer = new KeyTimer();
+	private KeyTimer keyTimer;
+	/**
+	 * The timer sending the value once the wheel stops, created on the first
+	 * wheel event.
+	 */
+	private Timer wheelTimer;
+	/**
+	 * A bit indicating whether the knob is being moved by the wheel and the
+	 * value has not been sent yet.
+	 */
+	private boolean slidingWheel = false;
 	/**
 	 * The elements used to display labels above the ticks.
 	 */
 	private List<Element> labelElements = new ArrayList<Element>();
+	/**
+	 * The text currently shown by each label element.
+	 */
+	private List<String> labelTexts = new ArrayList<String>();
+	/**
+	 * The measured width of label texts, so that a label is measured once per
+	 * text rather than on every draw.
+	 */
+	private Map<String, Integer> labelWidths = new HashMap<String, Integer>();
+	/**
+	 * The measured width of a tick, -1 if not measured yet.
+	 */
+	private int tickWidth = -1;
 	/**
 	 * The line that the knob moves over.
 	 */
@@ -93,6 +173,16 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 */
 	private List<Element> tickElements = new ArrayList<Element>();
 	private LabelFormatter labelFormatter;
+	/**
+	 * The formatter last installed by this widget itself. Any other formatter
+	 * was set by other code and is not replaced by a shared configuration.
+	 */
+	private LabelFormatter installedFormatter;
+	/**
+	 * The shared configuration the settings come from, null if the server
+	 * sent them for this slider alone.
+	 */
+	private SharedConfiguration configuration;
 	private Element knobElemMin;
 	private Element knobElemMax;
 
@@ -108,6 +198,169 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	private double maxCurrValue;
 	private Element _target;
 	private String appendString="";
+	/**
+	 * The label format set on the server.
+	 */
+	private int labelDecimals = -1;
+	private String labelPrefix = "";
+	private boolean compactLabels = false;
+	/**
+	 * The minimum time in milliseconds between two super immediate sends, 0
+	 * sends on every move.
+	 */
+	private int sendInterval = 0;
+	/**
+	 * A bit indicating whether a move inside the send interval is sent once
+	 * the interval elapses.
+	 */
+	private boolean sendTrailing = true;
+	/**
+	 * The time the knob values were last sent to the server.
+	 */
+	private double lastSendTime = 0;
+	/**
+	 * The timer used to send the latest value at the end of a send interval.
+	 */
+	private SendTimer sendTimer = new SendTimer();
+	/**
+	 * A bit indicating whether the server prefetches, and wants the dragged
+	 * knob and its velocity with each value.
+	 */
+	private boolean prefetch = false;
+	/**
+	 * The last value and time of the dragged knob, and its smoothed velocity
+	 * in values per second.
+	 */
+	private double dragValue;
+	private double dragTime = 0;
+	private double dragVelocity = 0;
+	/**
+	 * A bit indicating whether a full paint has been received, so that a
+	 * partial update from the server has something to apply to.
+	 */
+	private boolean initialized = false;
+	/**
+	 * Bits indicating whether the inputs of the labels or the ticks changed
+	 * since they were last drawn.
+	 */
+	private boolean labelsDirty = true;
+	private boolean ticksDirty = true;
+	/**
+	 * The line width the labels and ticks were last laid out for.
+	 */
+	private int lastLineWidth = -1;
+	/**
+	 * The absolute left of the line in frame rendering, measured on resize
+	 * and when a drag starts, so that pointer moves read no layout.
+	 */
+	private int lineAbsoluteLeft = 0;
+	/**
+	 * The counters kept while instrumentation is on, null while it is off.
+	 */
+	private SliderInstrumentation instrumentation;
+	/**
+	 * The bucket counts of the histogram shown behind the track, null if
+	 * there is none.
+	 */
+	private int[] histogramCounts;
+	private double histogramOrigin;
+	private double histogramBucketWidth;
+	/**
+	 * The element holding the histogram bars, created when first needed.
+	 */
+	private Element histogramElement;
+	private List<Element> barElements = new ArrayList<Element>();
+	private boolean histogramDirty = false;
+	/**
+	 * The highlighted buckets, from first up to but not including last.
+	 */
+	private int selectedBarFirst = 0;
+	private int selectedBarLast = 0;
+	/**
+	 * The cumulative counts of the count preview, for each grid point the
+	 * rows below it followed by the rows at most it, null if there is no
+	 * preview.
+	 */
+	private int[] countTable;
+	private double countSpacing;
+	private String countFormat;
+	/**
+	 * Whether ctrl+wheel zooms into the range, and whether values are
+	 * milliseconds since the epoch marked by the calendar.
+	 */
+	private boolean zoomable = false;
+	private boolean timeAxis = false;
+	/**
+	 * The visible part of the range while zoomed in, NaN when the whole range
+	 * is shown.
+	 */
+	private double windowMin = Double.NaN;
+	private double windowMax = Double.NaN;
+	/**
+	 * Whether the number of ticks and labels follows the line width, with
+	 * the configured numbers as the most shown.
+	 */
+	private boolean autoDensity = false;
+	/**
+	 * The marks last drawn by a zoomable or automatic density slider, kept
+	 * until their inputs change.
+	 */
+	private AxisScale labelScale;
+	private AxisScale tickScale;
+	/**
+	 * The element showing the count, created when first needed.
+	 */
+	private Element countElement;
+	private int shownCount = -1;
+	/**
+	 * The thumb values in multi thumb mode, in ascending order, null in two
+	 * knob mode. The first and last thumb take the place of the knobs.
+	 */
+	private double[] thumbValues;
+	private List<Element> thumbElements = new ArrayList<Element>();
+	/**
+	 * The thumb being dragged, -1 if none was hit yet.
+	 */
+	private int activeThumb = -1;
+	/**
+	 * A bit indicating whether the last change was a single thumb being
+	 * dragged, which is sent to the server on its own.
+	 */
+	private boolean thumbMoved = false;
+	/**
+	 * The thumb width measured on the last resize, used in frame rendering.
+	 */
+	private int thumbWidth = 0;
+	/**
+	 * A bit indicating whether knobs are moved by CSS transforms once per
+	 * animation frame instead of on every event.
+	 */
+	private boolean frameRendering = false;
+	/**
+	 * A bit indicating whether an animation frame has been requested and not
+	 * yet run.
+	 */
+	private boolean framePending = false;
+	/**
+	 * The renderer drawing the slider into a canvas, null while the slider is
+	 * made of elements.
+	 */
+	private CanvasRenderer canvasRenderer;
+	/**
+	 * The knob widths measured on the last resize, used in frame rendering so
+	 * that moving a knob does not force a layout.
+	 */
+	private int knobMinWidth = 0;
+	private int knobMaxWidth = 0;
+	/**
+	 * The callback that draws the knobs in the next animation frame.
+	 */
+	private final AnimationCallback frameCallback = new AnimationCallback() {
+		public void execute(double timestamp) {
+			framePending = false;
+			paintKnobAndProgress();
+		}
+	};
 
 	public VRangeSliderBar() {
 		super();
@@ -116,7 +369,8 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		this.setMinCurrValue(0);
 		this.maxCurrValue = 100;
 		this.stepSize = 10;
-		setLabelFormatter(LabelFormatter.getDefault());
+		installedFormatter = LabelFormatter.getDefault();
+		setLabelFormatter(installedFormatter);
 		// Create the outer shell
 		DOM.setStyleAttribute(getElement(), "position", "relative");
 		setStyleName(CLASSNAME);
@@ -174,7 +428,9 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	@Override
 	public void onBrowserEvent(Event event) {
 		super.onBrowserEvent(event);
-		// VConsole.log("browser event" + DOM.eventGetType(event));
+		if (instrumentation != null) {
+			instrumentation.eventReceived(DOM.eventGetType(event));
+		}
 		if (!enabled || readonly) {
 			return;
 		}
@@ -182,7 +438,14 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		switch (DOM.eventGetType(event)) {
 		// Unhighlight and cancel keyboard events
 		case Event.ONBLUR:
-			keyTimer.cancel();
+			if (keyTimer != null) {
+				keyTimer.cancel();
+			}
+			if (slidingWheel) {
+				wheelTimer.cancel();
+				slidingWheel = false;
+				stopSliding(false, true);
+			}
 			if (slidingMouse) {
 				DOM.releaseCapture(getElement());
 				slidingMouse = false;
@@ -202,11 +465,22 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		case Event.ONMOUSEWHEEL:
 			int velocityY = DOM.eventGetMouseWheelVelocityY(event);
 			DOM.eventPreventDefault(event);
-			if (velocityY < 0) {
-//				 shiftRight(1,true);
-			} else {
-				// shiftLeft(1,true);
+			if (zoomable && DOM.eventGetCtrlKey(event)) {
+				// zoom in on the value under the mouse
+				zoom(velocityY < 0 ? 1 / ZOOM_FACTOR : ZOOM_FACTOR, DOM.eventGetClientX(event));
+				break;
+			}
+			if (velocityY == 0 || slidingMouse || slidingKeyboard) {
+				break;
 			}
+			if (!slidingWheel) {
+				slidingWheel = true;
+				startSliding(false, true);
+			}
+			int steps = DOM.eventGetCtrlKey(event) ? getCtrlMultiplier() : 1;
+			shiftKnob(velocityY < 0 ? steps : -steps);
+			// send once the wheel stops
+			getWheelTimer().schedule(WHEEL_IDLE);
 			break;
 		// Shift left or right on key press
 		case Event.ONKEYDOWN:
@@ -214,7 +488,9 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			break;
 		// Stop shifting on key up
 		case Event.ONKEYUP:
-			keyTimer.cancel();
+			if (keyTimer != null) {
+				keyTimer.cancel();
+			}
 			if (slidingKeyboard) {
 				slidingKeyboard = false;
 				stopSliding(true, true);
@@ -225,13 +501,19 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		case Event.ONTOUCHSTART:
 			setFocus(true);
 			slidingMouse = true;
+			dragTime = 0;
+			dragVelocity = 0;
+			if (frameRendering) {
+				// the page may have scrolled or reflowed since the resize
+				lineAbsoluteLeft = DOM.getAbsoluteLeft(lineElement);
+			}
 			DOM.setCapture(getElement());
 			startSliding(true, true);
 			DOM.eventPreventDefault(event);
 			slideKnob(event);
+			sendSuperImmediate();
 			break;
 		case Event.ONMOUSEUP:
-			// case Event.ONTOUCHEND:
 			if (slidingMouse) {
 				DOM.releaseCapture(getElement());
 				slidingMouse = false;
@@ -239,14 +521,22 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 				stopSliding(true, true);
 			}
 			break;
+		case Event.ONTOUCHEND:
+			// touchend carries no position, just send where the knob is
+			if (slidingMouse) {
+				DOM.releaseCapture(getElement());
+				slidingMouse = false;
+				stopSliding(true, true);
+			}
+			break;
 		case Event.ONMOUSEMOVE:
 		case Event.ONTOUCHMOVE:
 			if (slidingMouse) {
 				slideKnob(event);
+				sendSuperImmediate();
 			}
 			break;
 		}
-		VConsole.log("sliding mouse " + slidingMouse + " slidKey" + slidingKeyboard + " step SZ" + stepSize);
 	}
 
 	private void processKeyDown(Event event) {
@@ -255,7 +545,7 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		}
 		int multiplier = 1;
 		if (DOM.eventGetCtrlKey(event)) {
-			multiplier = (int) (getTotalRange() / stepSize / 10);
+			multiplier = getCtrlMultiplier();
 		}
 		switch (DOM.eventGetKeyCode(event)) {
 		case KeyCodes.KEY_HOME:
@@ -270,15 +560,15 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			DOM.eventPreventDefault(event);
 			slidingKeyboard = true;
 			startSliding(false, true);
-			// shiftLeft(multiplier,superImmediate);
-			keyTimer.schedule(400, false, multiplier);
+			shiftKnob(-multiplier);
+			getKeyTimer().schedule(KEY_REPEAT_START, false, multiplier);
 			break;
 		case KeyCodes.KEY_RIGHT:
 			DOM.eventPreventDefault(event);
 			slidingKeyboard = true;
 			startSliding(false, true);
-			// shiftRight(multiplier,superImmediate);
-			keyTimer.schedule(400, true, multiplier);
+			shiftKnob(multiplier);
+			getKeyTimer().schedule(KEY_REPEAT_START, true, multiplier);
 			break;
 		case 32:
 			DOM.eventPreventDefault(event);
@@ -288,6 +578,74 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		}
 	}
 
+	private KeyTimer getKeyTimer() {
+		if (keyTimer == null) {
+			keyTimer = new KeyTimer();
+		}
+		return keyTimer;
+	}
+
+	private Timer getWheelTimer() {
+		if (wheelTimer == null) {
+			wheelTimer = new Timer() {
+				@Override
+				public void run() {
+					if (slidingWheel) {
+						slidingWheel = false;
+						stopSliding(false, true);
+					}
+				}
+			};
+		}
+		return wheelTimer;
+	}
+
+	/**
+	 * Return the steps ctrl moves the knob by, a tenth of the range.
+	 */
+	private int getCtrlMultiplier() {
+		return (int) Math.max(1, Math.round(getTotalRange() / getKeyStep() / 10));
+	}
+
+	/**
+	 * Return the distance of one keyboard or wheel step, a hundredth of the
+	 * range on a continuous slider.
+	 */
+	private double getKeyStep() {
+		if (stepSize > 0) {
+			return stepSize;
+		}
+		return getTotalRange() > 0 ? getTotalRange() / 100 : 1;
+	}
+
+	/**
+	 * Move the focused knob, the one last dragged, by a number of steps. The
+	 * knob is only drawn; the caller sends the value when the keys or the
+	 * wheel are released.
+	 * 
+	 * @param steps
+	 *            the steps to move, negative to move to lower values
+	 */
+	private void shiftKnob(int steps) {
+		double distance = steps * getKeyStep();
+		if (thumbValues != null) {
+			int index = Math.max(0, activeThumb);
+			int last = thumbValues.length - 1;
+			double low = index == 0 ? rangeMin : thumbValues[index - 1];
+			double high = index == last ? rangeMax : thumbValues[index + 1];
+			activeThumb = index;
+			thumbValues[index] = Math.max(low, Math.min(high, confineValue(thumbValues[index] + distance)));
+			minCurrValue = thumbValues[0];
+			maxCurrValue = thumbValues[last];
+			thumbMoved = true;
+			drawKnobAndProgress();
+		} else if (_target == knobElemMax) {
+			setCurrentValue(minCurrValue, Math.max(minCurrValue, maxCurrValue + distance), false);
+		} else {
+			setCurrentValue(Math.min(maxCurrValue, minCurrValue + distance), maxCurrValue, false);
+		}
+	}
+
 	/**
 	 * This method is called when the dimensions of the parent element change.
 	 * Subclasses should override this method as needed.
@@ -300,11 +658,52 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	public void onResize(int width, int height) {
 		// Center the line in the shell
 		int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
-		lineLeftOffset = (width / 2) - (lineWidth / 2);
-		DOM.setStyleAttribute(lineElement, "left", lineLeftOffset + "px");
-		// Draw the other components
-		drawLabels();
-		drawTicks();
+		int leftOffset = (width / 2) - (lineWidth / 2);
+		if (leftOffset != lineLeftOffset || lineWidth != lastLineWidth) {
+			lineLeftOffset = leftOffset;
+			lastLineWidth = lineWidth;
+			DOM.setStyleAttribute(lineElement, "left", lineLeftOffset + "px");
+			labelsDirty = true;
+			ticksDirty = true;
+			histogramDirty = true;
+		}
+		if (canvasRenderer != null) {
+			knobMinWidth = CanvasRenderer.KNOB_WIDTH;
+			knobMaxWidth = CanvasRenderer.KNOB_WIDTH;
+			thumbWidth = CanvasRenderer.KNOB_WIDTH;
+			canvasRenderer.setLayout(width, height, lineLeftOffset, lineWidth);
+			if (labelsDirty || ticksDirty) {
+				drawCanvasMarks(lineWidth);
+			}
+		} else if (frameRendering) {
+			knobMinWidth = DOM.getElementPropertyInt(knobElemMin, "offsetWidth");
+			knobMaxWidth = DOM.getElementPropertyInt(knobElemMax, "offsetWidth");
+			if (thumbValues != null) {
+				thumbWidth = DOM.getElementPropertyInt(thumbElements.get(0), "offsetWidth");
+			}
+			lineAbsoluteLeft = DOM.getAbsoluteLeft(lineElement);
+			// the progress bars span the line and are scaled down to the
+			// knobs with transforms, so moving a knob does not touch layout
+			DOM.setStyleAttribute(progressElementMin, "left", lineLeftOffset + "px");
+			DOM.setStyleAttribute(progressElementMin, "width", lineWidth + "px");
+			DOM.setStyleAttribute(progressElementMin, "transformOrigin", "0 0");
+			DOM.setStyleAttribute(progressElementMin, "WebkitTransformOrigin", "0 0");
+			DOM.setStyleAttribute(progressElementMax, "right", lineLeftOffset + "px");
+			DOM.setStyleAttribute(progressElementMax, "width", lineWidth + "px");
+			DOM.setStyleAttribute(progressElementMax, "transformOrigin", "100% 0");
+			DOM.setStyleAttribute(progressElementMax, "WebkitTransformOrigin", "100% 0");
+		}
+		// Draw the other components, labels and ticks only if their inputs
+		// changed
+		if (labelsDirty) {
+			drawLabels();
+		}
+		if (ticksDirty) {
+			drawTicks();
+		}
+		if (histogramDirty) {
+			drawHistogram();
+		}
 		drawKnobAndProgress();
 	}
 
@@ -340,27 +739,88 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	public void setCurrentValue(double minCurVal, double maxCurVal, boolean fireEvent) {
 		this.setMinCurrValue(confineValue(minCurVal));
 		this.maxCurrValue = confineValue(maxCurVal);
+		if (thumbValues != null) {
+			syncThumbs();
+		}
 		// Redraw the knob and progress bar
 		drawKnobAndProgress();
 		if (fireEvent) {
+			thumbMoved = false;
 			updateValueToServer();
 		}
-		VConsole.log(" setCurrentValue" + minCurVal + " " + maxCurVal + "" + superImmediate);
 	}
 
 	private double confineValue(double value) {
 		// Confine the value to the range
 		double val = Math.max(rangeMin, Math.min(rangeMax, value));
-		double remainder = (val - rangeMin) % stepSize;
-		val -= remainder;
+		if (!(stepSize > 0)) {
+			return val;
+		}
+		double offset = val - rangeMin;
+		if (rangeMin == Math.floor(rangeMin) && stepSize == Math.floor(stepSize)
+				&& Math.abs(rangeMin) < MAX_EXACT && Math.abs(rangeMax) < MAX_EXACT) {
+			// Whole numbers, such as milliseconds since the epoch, snap in
+			// long arithmetic so that no step is lost to rounding when zoomed
+			// in on a huge range
+			long step = (long) stepSize;
+			long index = (long) Math.floor(offset / step);
+			if (index * step > offset) {
+				index--;
+			} else if ((index + 1) * step <= offset) {
+				index++;
+			}
+			// Go to next step if more than halfway there
+			if ((offset - index * step) * 2 > step && (index + 1) * step <= (long) rangeMax - (long) rangeMin) {
+				index++;
+			}
+			return (long) rangeMin + index * step;
+		}
+		double index = Math.floor(offset / stepSize);
+		double remainder = offset - index * stepSize;
 		// Go to next step if more than halfway there
-		if ((remainder > (stepSize / 2)) && ((val + stepSize) <= rangeMax)) {
-			val += stepSize;
+		if ((remainder > (stepSize / 2)) && ((index + 1) * stepSize <= rangeMax - rangeMin)) {
+			index++;
+		}
+		return rangeMin + index * stepSize;
+	}
+
+	/**
+	 * Send the knob values while dragging in super immediate mode, at most
+	 * once per send interval.
+	 */
+	private void sendSuperImmediate() {
+		if (!superImmediate) {
+			return;
+		}
+		if (sendInterval <= 0) {
+			updateValueToServer();
+			return;
+		}
+		double wait = lastSendTime + sendInterval - Duration.currentTimeMillis();
+		if (wait <= 0) {
+			updateValueToServer();
+		} else if (sendTrailing && !sendTimer.scheduled) {
+			sendTimer.schedule((int) Math.ceil(wait));
 		}
-		return val;
 	}
 
 	private void updateValueToServer() {
+		sendTimer.cancel();
+		lastSendTime = Duration.currentTimeMillis();
+		if (instrumentation != null) {
+			instrumentation.sent();
+		}
+		if (prefetch) {
+			int knob = thumbValues != null ? activeThumb : _target == knobElemMax ? 1 : 0;
+			client.updateVariable(id, "dragknob", knob, false);
+			client.updateVariable(id, "dragvelocity", getDragVelocity(), false);
+		}
+		if (thumbValues != null && thumbMoved) {
+			// only the thumb that moved
+			client.updateVariable(id, "thumbindex", activeThumb, false);
+			client.updateVariable(id, "thumbvalue", thumbValues[activeThumb], immediate);
+			return;
+		}
 		client.updateVariable(id, "knobmin", getMinCurrValue(), false);
 		client.updateVariable(id, "knobmax", getMaxCurrValue(), immediate);
 
@@ -373,7 +833,21 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 *            true to enable the widget, false to disable it
 	 */
 	public void setEnabled(boolean enabled) {
+		applyEnabled(enabled);
+		redraw();
+	}
+
+	private void applyEnabled(boolean enabled) {
+		if (this.enabled != enabled) {
+			labelsDirty = true;
+			ticksDirty = true;
+			labelWidths.clear();
+			tickWidth = -1;
+		}
 		this.enabled = enabled;
+		if (canvasRenderer != null) {
+			canvasRenderer.setEnabled(enabled);
+		}
 		if (enabled) {
 			// images.slider().applyTo(knobImage);
 			DOM.setElementProperty(lineElement, "className", SLIDER_BAR_LINE);
@@ -382,7 +856,88 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			DOM.setElementProperty(lineElement, "className",
 					"gwt-VRangeSliderBar-line gwt-VRangeSliderBar-line-disabled");
 		}
-		redraw();
+	}
+
+	/**
+	 * Install a number formatter for the format set on the server, or go back
+	 * to the default one if the server sets none. A formatter set by other
+	 * code is left alone.
+	 */
+	private void updateLabelFormatter() {
+		if (labelFormatter != installedFormatter && !(labelFormatter instanceof NumberLabelFormatter)) {
+			return;
+		}
+		boolean serverFormat = labelDecimals >= 0 || labelPrefix.length() > 0 || compactLabels;
+		if (serverFormat) {
+			installedFormatter = new NumberLabelFormatter(labelDecimals, labelPrefix, appendString, compactLabels);
+			setLabelFormatter(installedFormatter);
+		} else if (labelFormatter instanceof NumberLabelFormatter) {
+			installedFormatter = LabelFormatter.getDefault();
+			setLabelFormatter(installedFormatter);
+		}
+	}
+
+	/**
+	 * Switch to another shared configuration, keeping the use counts of the
+	 * configurations of attached sliders.
+	 */
+	private void useConfiguration(SharedConfiguration shared) {
+		if (shared == configuration) {
+			return;
+		}
+		if (isAttached()) {
+			if (configuration != null) {
+				configuration.release();
+			}
+			if (shared != null) {
+				shared.acquire();
+			}
+		}
+		configuration = shared;
+	}
+
+	/**
+	 * Take the settings from a shared configuration, marking the labels and
+	 * ticks dirty only if they differ from the current ones.
+	 */
+	private void applyConfiguration(SharedConfiguration shared) {
+		useConfiguration(shared);
+		if (shared.rangeMin != rangeMin || shared.rangeMax != rangeMax) {
+			rangeMin = shared.rangeMin;
+			rangeMax = shared.rangeMax;
+			labelsDirty = true;
+			ticksDirty = true;
+			histogramDirty = true;
+		}
+		stepSize = shared.stepSize;
+		if (shared.numTicks != numTicks) {
+			numTicks = shared.numTicks;
+			ticksDirty = true;
+		}
+		if (shared.numLabels != numLabels) {
+			numLabels = shared.numLabels;
+			labelsDirty = true;
+		}
+		appendString = shared.appendString;
+		labelDecimals = shared.labelDecimals;
+		labelPrefix = shared.labelPrefix;
+		compactLabels = shared.compactLabels;
+		if (labelFormatter != shared.getLabelFormatter()
+				&& (labelFormatter == installedFormatter || labelFormatter instanceof NumberLabelFormatter)) {
+			installedFormatter = shared.getLabelFormatter();
+			setLabelFormatter(installedFormatter);
+		}
+	}
+
+	/**
+	 * Return the shared layout for the current line width, or null if the
+	 * slider has no shared configuration.
+	 */
+	private SharedConfiguration.Layout getSharedLayout(int lineWidth) {
+		if (configuration == null) {
+			return null;
+		}
+		return configuration.getLayout(lineWidth, enabled);
 	}
 
 	/**
@@ -393,6 +948,7 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 */
 	public void setLabelFormatter(LabelFormatter labelFormatter) {
 		this.labelFormatter = labelFormatter;
+		labelsDirty = true;
 	}
 
 	/**
@@ -513,15 +1069,49 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 * @return the current percent complete
 	 */
 	protected double getKnobPercent(double val) {
+		double viewMin = getViewMin();
+		double viewMax = getViewMax();
 		// If we have no range
-		if (rangeMax <= rangeMin) {
+		if (viewMax <= viewMin) {
 			return 0;
 		}
-		// Calculate the relative progress
-		double percent = (val - rangeMin) / (rangeMax - rangeMin);
+		// Calculate the relative progress, values outside a zoomed window
+		// stay at its edges
+		double percent = (val - viewMin) / (viewMax - viewMin);
 		return Math.max(0.0, Math.min(1.0, percent));
 	}
 
+	/**
+	 * Return the value at a position on the line, the inverse of
+	 * getKnobPercent.
+	 * 
+	 * @param percent
+	 *            the position between 0.0 and 1.0
+	 * @return the value, not confined to the steps
+	 */
+	private double getValueAt(double percent) {
+		double viewMin = getViewMin();
+		return viewMin + Math.max(0, getViewMax() - viewMin) * percent;
+	}
+
+	private boolean isZoomed() {
+		return !Double.isNaN(windowMin);
+	}
+
+	/**
+	 * @return the smallest visible value
+	 */
+	private double getViewMin() {
+		return isZoomed() ? windowMin : rangeMin;
+	}
+
+	/**
+	 * @return the biggest visible value
+	 */
+	private double getViewMax() {
+		return isZoomed() ? windowMax : rangeMax;
+	}
+
 	/**
 	 * This method is called immediately after a widget becomes attached to the
 	 * browser's document.
@@ -531,119 +1121,782 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		// Reset the position attribute of the parent element
 		DOM.setStyleAttribute(getElement(), "position", "relative");
 		// ResizableWidgetCollection.get().add(this);
+		if (configuration != null) {
+			configuration.acquire();
+		}
 		redraw();
 	}
 
 	/**
-	 * Draw the knob where it is supposed to be relative to the line.
+	 * This method is called immediately before a widget is detached from the
+	 * browser's document.
 	 */
-	private void drawKnobAndProgress() {
-		// Abort if not attached
-		if (!isAttached()) {
-			return;
+	@Override
+	protected void onUnload() {
+		if (configuration != null) {
+			configuration.release();
 		}
-		// // Move the knob to the correct position
-		int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
-
-		int knobWidth = DOM.getElementPropertyInt(knobElemMin, "offsetWidth");
-
-		// draw min knob
-		int minKnobLeft = (int) (lineLeftOffset + (getKnobPercent(getMinCurrValue()) * lineWidth) - (knobWidth / 2));
-		minKnobLeft = Math.min(minKnobLeft, lineLeftOffset + lineWidth - (knobWidth / 2) - 1);
-		DOM.setStyleAttribute(knobElemMin, "left", minKnobLeft + "px");
-
-		knobWidth = DOM.getElementPropertyInt(knobElemMax, "offsetWidth");
-		int maxknobLeft = (int) (lineLeftOffset + (getKnobPercent(maxCurrValue) * lineWidth) - (knobWidth / 2));
-		maxknobLeft = Math.min(maxknobLeft, lineLeftOffset + lineWidth - (knobWidth / 2) - 1);
-		DOM.setStyleAttribute(knobElemMax, "left", maxknobLeft + "px");
-
-		//
-		DOM.setStyleAttribute(progressElementMin, "left", lineLeftOffset + "px");
-		DOM.setStyleAttribute(progressElementMin, "width", 95 * getKnobPercent(getMinCurrValue()) + "%");
-		
-		DOM.setStyleAttribute(progressElementMax, "right", lineLeftOffset + "px");
-		 double rightwidth = 95*  (rangeMax-  getMaxCurrValue() )/ (rangeMax - rangeMin);
-		DOM.setStyleAttribute(progressElementMax, "width", rightwidth + "%");
-		
-		
-		
 	}
 
 	/**
-	 * Draw the labels along the line.
+	 * Draw the knob where it is supposed to be relative to the line. In frame
+	 * rendering the drawing is deferred to the next animation frame, so that
+	 * several moves within one frame are drawn once.
 	 */
-	private void drawLabels() {
+	private void drawKnobAndProgress() {
 		// Abort if not attached
 		if (!isAttached()) {
 			return;
 		}
-		// Draw the labels
-		int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
-		if (numLabels > 0) {
-			// Create the labels or make them visible
-			for (int i = 0; i <= numLabels; i++) {
-				Element label = null;
-				if (i < labelElements.size()) {
-					label = labelElements.get(i);
-				} else { // Create the new label
-					label = DOM.createDiv();
-					DOM.setStyleAttribute(label, "position", "absolute");
-					DOM.setStyleAttribute(label, "display", "none");
-					if (enabled) {
-						DOM.setElementProperty(label, "className", "gwt-VRangeSliderBar-label");
-					} else {
-						DOM.setElementProperty(label, "className", "gwt-VRangeSliderBar-label-disabled");
-					}
-					DOM.appendChild(getElement(), label);
-					labelElements.add(label);
-				}
-				// Set the label text
-				double value = rangeMin + (getTotalRange() * i / numLabels);
-				DOM.setStyleAttribute(label, "visibility", "hidden");
-				DOM.setStyleAttribute(label, "display", "");
-				DOM.setElementProperty(label, "innerHTML", formatLabel(value));
-				// Move to the left so the label width is not clipped by the
-				// shell
-				DOM.setStyleAttribute(label, "left", "0px");
-				// Position the label and make it visible
-				int labelWidth = DOM.getElementPropertyInt(label, "offsetWidth");
-				int labelLeftOffset = lineLeftOffset + (lineWidth * i / numLabels) - (labelWidth / 2);
-				labelLeftOffset = Math.min(labelLeftOffset, lineLeftOffset + lineWidth - labelWidth);
-				labelLeftOffset = Math.max(labelLeftOffset, lineLeftOffset);
-				DOM.setStyleAttribute(label, "left", labelLeftOffset + "px");
-				DOM.setStyleAttribute(label, "visibility", "visible");
-			}
-			// Hide unused labels
-			for (int i = (numLabels + 1); i < labelElements.size(); i++) {
-				DOM.setStyleAttribute(labelElements.get(i), "display", "none");
-			}
-		} else { // Hide all labels
-			for (Element elem : labelElements) {
-				DOM.setStyleAttribute(elem, "display", "none");
-			}
+		if (!frameRendering) {
+			paintKnobAndProgress();
+		} else if (!framePending) {
+			framePending = true;
+			AnimationScheduler.get().requestAnimationFrame(frameCallback, getElement());
 		}
 	}
 
-	/**
-	 * Draw the tick along the line.
-	 */
-	private void drawTicks() {
+	private void paintKnobAndProgress() {
 		// Abort if not attached
 		if (!isAttached()) {
 			return;
 		}
-		// Draw the ticks
-		int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
-		if (numTicks > 0) {
-			// Create the ticks or make them visible
-			for (int i = 0; i <= numTicks; i++) {
-				Element tick = null;
-				if (i < tickElements.size()) {
-					tick = tickElements.get(i);
-				} else {
-					// Create the new tick
-					tick = DOM.createDiv();
-					DOM.setStyleAttribute(tick, "position", "absolute");
+		if (frameRendering && lastLineWidth < 0) {
+			// not measured yet, onResize will draw
+			return;
+		}
+		double start = instrumentation != null ? Duration.currentTimeMillis() : 0;
+		if (canvasRenderer != null) {
+			int lineWidth = getLineWidth();
+			double[] values = thumbValues != null ? thumbValues : new double[] { minCurrValue, maxCurrValue };
+			int[] centers = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				centers[i] = knobLeft(values[i], lineWidth, CanvasRenderer.KNOB_WIDTH) + CanvasRenderer.KNOB_WIDTH / 2;
+			}
+			canvasRenderer.setKnobs(centers, thumbValues != null);
+			updateHistogramSelection();
+			updateCountPreview();
+			if (instrumentation != null) {
+				instrumentation.drawn(SliderInstrumentation.DRAW_KNOBS, start);
+			}
+			return;
+		}
+		if (thumbValues != null) {
+			drawThumbs();
+		} else if (frameRendering) {
+			// use the sizes measured on resize, and only write styles
+			int minKnobLeft = knobLeft(getMinCurrValue(), lastLineWidth, knobMinWidth);
+			int maxknobLeft = knobLeft(maxCurrValue, lastLineWidth, knobMaxWidth);
+			setTranslateX(knobElemMin, minKnobLeft);
+			setTranslateX(knobElemMax, maxknobLeft);
+		} else {
+			// // Move the knob to the correct position
+			int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
+
+			int knobWidth = DOM.getElementPropertyInt(knobElemMin, "offsetWidth");
+
+			// draw min knob
+			int minKnobLeft = knobLeft(getMinCurrValue(), lineWidth, knobWidth);
+			DOM.setStyleAttribute(knobElemMin, "left", minKnobLeft + "px");
+
+			knobWidth = DOM.getElementPropertyInt(knobElemMax, "offsetWidth");
+			int maxknobLeft = knobLeft(maxCurrValue, lineWidth, knobWidth);
+			DOM.setStyleAttribute(knobElemMax, "left", maxknobLeft + "px");
+		}
+
+		if (frameRendering) {
+			setTransform(progressElementMin, "scaleX(" + getKnobPercent(getMinCurrValue()) + ")");
+			setTransform(progressElementMax, "scaleX(" + (1 - getKnobPercent(getMaxCurrValue())) + ")");
+		} else {
+			DOM.setStyleAttribute(progressElementMin, "left", lineLeftOffset + "px");
+			DOM.setStyleAttribute(progressElementMin, "width", 95 * getKnobPercent(getMinCurrValue()) + "%");
+
+			DOM.setStyleAttribute(progressElementMax, "right", lineLeftOffset + "px");
+			double rightwidth = 95 * (1 - getKnobPercent(getMaxCurrValue()));
+			DOM.setStyleAttribute(progressElementMax, "width", rightwidth + "%");
+		}
+		updateHistogramSelection();
+		updateCountPreview();
+		if (instrumentation != null) {
+			instrumentation.drawn(SliderInstrumentation.DRAW_KNOBS, start);
+		}
+	}
+
+	/**
+	 * Show the number of rows inside the range of the knobs, counted from the
+	 * table sent by the server.
+	 */
+	private void updateCountPreview() {
+		if (countTable == null) {
+			if (countElement != null) {
+				DOM.setStyleAttribute(countElement, "display", "none");
+			}
+			return;
+		}
+		if (countElement == null) {
+			countElement = DOM.createDiv();
+			DOM.setStyleAttribute(countElement, "position", "absolute");
+			DOM.setElementProperty(countElement, "className", COUNT_CLASSNAME);
+			DOM.appendChild(getElement(), countElement);
+		}
+		DOM.setStyleAttribute(countElement, "display", "");
+		int count = (int) Math.round(cumulativeCount(maxCurrValue, true) - cumulativeCount(minCurrValue, false));
+		if (count != shownCount) {
+			shownCount = count;
+			DOM.setInnerText(countElement, countFormat.replace("{0}", String.valueOf(count)));
+		}
+	}
+
+	/**
+	 * Return the number of rows below a value, or at most a value. Between two
+	 * grid points of a sampled table the count is interpolated.
+	 */
+	private double cumulativeCount(double value, boolean inclusive) {
+		int last = countTable.length / 2 - 1;
+		int offset = inclusive ? 1 : 0;
+		double position = (value - rangeMin) / countSpacing;
+		if (Math.abs(position - Math.round(position)) < 1e-6) {
+			position = Math.round(position);
+		}
+		int i = (int) Math.floor(position);
+		if (i < 0) {
+			return countTable[offset];
+		}
+		if (i >= last || value >= rangeMax) {
+			return countTable[2 * last + offset];
+		}
+		double left = rangeMin + i * countSpacing;
+		if (value == left) {
+			return countTable[2 * i + offset];
+		}
+		// the last grid point is rangeMax, which may be closer than spacing
+		double right = i + 1 == last ? rangeMax : left + countSpacing;
+		double from = countTable[2 * i + 1];
+		double to = countTable[2 * (i + 1)];
+		return from + (to - from) * (value - left) / (right - left);
+	}
+
+	/**
+	 * Draw the thumbs of a multi thumb slider.
+	 */
+	private void drawThumbs() {
+		int lineWidth = frameRendering ? lastLineWidth : DOM.getElementPropertyInt(lineElement, "offsetWidth");
+		int width = frameRendering ? thumbWidth : DOM.getElementPropertyInt(thumbElements.get(0), "offsetWidth");
+		for (int i = 0; i < thumbValues.length; i++) {
+			int left = knobLeft(thumbValues[i], lineWidth, width);
+			if (frameRendering) {
+				setTranslateX(thumbElements.get(i), left);
+			} else {
+				DOM.setStyleAttribute(thumbElements.get(i), "left", left + "px");
+			}
+		}
+	}
+
+	/**
+	 * Switch between two knobs and multiple thumbs. Thumb values painted
+	 * while a thumb is being moved keep the moved thumb where the user put
+	 * it, so that releasing it still sends its move.
+	 * 
+	 * @param values
+	 *            the thumb values in ascending order, null for two knobs
+	 */
+	private void setThumbValues(double[] values) {
+		boolean moving = thumbMoved && (slidingMouse || slidingKeyboard || slidingWheel) && values != null
+				&& thumbValues != null && values.length == thumbValues.length && activeThumb >= 0;
+		if (moving) {
+			int last = values.length - 1;
+			double low = activeThumb == 0 ? rangeMin : values[activeThumb - 1];
+			double high = activeThumb == last ? rangeMax : values[activeThumb + 1];
+			values[activeThumb] = Math.max(low, Math.min(high, thumbValues[activeThumb]));
+		}
+		thumbValues = values;
+		int count = values == null ? 0 : values.length;
+		while (thumbElements.size() < count) {
+			Element thumb = DOM.createDiv();
+			DOM.setStyleAttribute(thumb, "position", "absolute");
+			if (frameRendering) {
+				DOM.setStyleAttribute(thumb, "left", "0px");
+			}
+			DOM.setElementProperty(thumb, "className", THUMB_CLASSNAME);
+			DOM.appendChild(getElement(), thumb);
+			thumbElements.add(thumb);
+		}
+		showKnobElements();
+		if (values != null) {
+			minCurrValue = values[0];
+			maxCurrValue = values[count - 1];
+		}
+		if (!moving) {
+			activeThumb = Math.min(activeThumb, count - 1);
+			thumbMoved = false;
+		}
+		// measure the thumbs on the next layout
+		lastLineWidth = -1;
+	}
+
+	/**
+	 * Move the first and last thumb to the current values and keep the inner
+	 * thumbs between them.
+	 */
+	private void syncThumbs() {
+		int last = thumbValues.length - 1;
+		thumbValues[0] = minCurrValue;
+		thumbValues[last] = maxCurrValue;
+		for (int i = 1; i < last; i++) {
+			thumbValues[i] = Math.max(minCurrValue, Math.min(maxCurrValue, thumbValues[i]));
+		}
+	}
+
+	/**
+	 * Return the thumb closest to a value, found by binary search over the
+	 * sorted thumbs. Of stacked thumbs, the one on the side of the value is
+	 * returned so that it can be dragged off the stack.
+	 */
+	private int nearestThumb(double value) {
+		int low = 0;
+		int high = thumbValues.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (thumbValues[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		// low is the first thumb at or above the value
+		if (low == thumbValues.length) {
+			return low - 1;
+		}
+		if (low > 0 && value - thumbValues[low - 1] <= thumbValues[low] - value) {
+			return low - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Return the absolute left of the line, without reading the layout in
+	 * frame rendering.
+	 */
+	private int getLineAbsoluteLeft() {
+		return frameRendering ? lineAbsoluteLeft : DOM.getAbsoluteLeft(lineElement);
+	}
+
+	/**
+	 * Slide a thumb of a multi thumb slider. The thumb is picked when the drag
+	 * starts and can not pass its neighbours.
+	 */
+	private void slideThumb(Event event) {
+		int x = DOM.eventGetClientX(event);
+		if (x <= 0) {
+			return;
+		}
+		int lineLeft = getLineAbsoluteLeft();
+		double percent = (double) (x - lineLeft) / (frameRendering ? lastLineWidth : getLineWidth());
+		double value = getValueAt(percent);
+		int type = DOM.eventGetType(event);
+		if (activeThumb < 0 || type == Event.ONMOUSEDOWN || type == Event.ONTOUCHSTART) {
+			activeThumb = nearestThumb(value);
+		}
+		int last = thumbValues.length - 1;
+		double low = activeThumb == 0 ? rangeMin : thumbValues[activeThumb - 1];
+		double high = activeThumb == last ? rangeMax : thumbValues[activeThumb + 1];
+		thumbValues[activeThumb] = Math.max(low, Math.min(high, confineValue(value)));
+		minCurrValue = thumbValues[0];
+		maxCurrValue = thumbValues[last];
+		thumbMoved = true;
+		drawKnobAndProgress();
+		trackVelocity(thumbValues[activeThumb]);
+	}
+
+	/**
+	 * Zoom the visible window around the value at a mouse position, keeping
+	 * that value under the mouse. The window stays inside the range and at
+	 * least a few steps wide; zooming out to the whole range ends the zoom.
+	 * The server is told the new window with the next request.
+	 * 
+	 * @param factor
+	 *            the new width of the window relative to the current one
+	 * @param clientX
+	 *            the mouse position
+	 */
+	private void zoom(double factor, int clientX) {
+		double viewMin = getViewMin();
+		double view = getViewMax() - viewMin;
+		int lineWidth = getLineWidth();
+		if (view <= 0 || lineWidth <= 0) {
+			return;
+		}
+		double percent = (double) (clientX - DOM.getAbsoluteLeft(lineElement)) / lineWidth;
+		double anchor = getValueAt(Math.max(0, Math.min(1, percent)));
+		double minWidth = Math.max(stepSize * 4, getTotalRange() * 1e-12);
+		double width = Math.max(minWidth, view * factor);
+		double min = anchor - (anchor - viewMin) * width / view;
+		setWindow(min, min + width);
+		client.updateVariable(id, "windowmin", getViewMin(), false);
+		client.updateVariable(id, "windowmax", getViewMax(), false);
+		labelsDirty = true;
+		ticksDirty = true;
+		histogramDirty = true;
+		redraw();
+	}
+
+	/**
+	 * Return true if two values are equal, taking NaN as equal to NaN.
+	 */
+	private static boolean sameValue(double a, double b) {
+		return a == b || (Double.isNaN(a) && Double.isNaN(b));
+	}
+
+	/**
+	 * Set the visible window, moved inside the range. A window covering the
+	 * whole range shows the slider unzoomed.
+	 */
+	private void setWindow(double min, double max) {
+		double width = Math.min(max - min, getTotalRange());
+		if (!zoomable || !(width > 0) || width >= getTotalRange()) {
+			windowMin = Double.NaN;
+			windowMax = Double.NaN;
+			return;
+		}
+		windowMin = Math.max(rangeMin, Math.min(rangeMax - width, min));
+		windowMax = windowMin + width;
+	}
+
+	/**
+	 * Update the velocity of the dragged knob from its new value.
+	 */
+	private void trackVelocity(double value) {
+		if (!prefetch) {
+			return;
+		}
+		double now = Duration.currentTimeMillis();
+		if (dragTime > 0 && now > dragTime) {
+			double velocity = (value - dragValue) * 1000 / (now - dragTime);
+			// smooth out the jitter of single mouse moves
+			dragVelocity = (dragVelocity + velocity) / 2;
+		}
+		dragValue = value;
+		dragTime = now;
+	}
+
+	/**
+	 * Return the velocity of the dragged knob, 0 if it is not dragged or has
+	 * stopped.
+	 */
+	private double getDragVelocity() {
+		if (!slidingMouse || Duration.currentTimeMillis() - dragTime > VELOCITY_TIMEOUT) {
+			return 0;
+		}
+		return dragVelocity;
+	}
+
+	/**
+	 * Return the left offset of a knob centered on the given value.
+	 */
+	private int knobLeft(double value, int lineWidth, int knobWidth) {
+		int knobLeft = (int) (lineLeftOffset + (getKnobPercent(value) * lineWidth) - (knobWidth / 2));
+		return Math.min(knobLeft, lineLeftOffset + lineWidth - (knobWidth / 2) - 1);
+	}
+
+	/**
+	 * Position an element horizontally with a CSS transform, which unlike
+	 * setting left does not trigger a layout.
+	 */
+	private static void setTranslateX(Element elem, int x) {
+		setTransform(elem, x == Integer.MIN_VALUE ? "" : "translateX(" + x + "px)");
+	}
+
+	/**
+	 * Set a transform, with the prefixes of older browsers.
+	 */
+	private static void setTransform(Element elem, String transform) {
+		DOM.setStyleAttribute(elem, "transform", transform);
+		DOM.setStyleAttribute(elem, "WebkitTransform", transform);
+		DOM.setStyleAttribute(elem, "MozTransform", transform);
+		DOM.setStyleAttribute(elem, "msTransform", transform);
+		DOM.setStyleAttribute(elem, "OTransform", transform);
+	}
+
+	/**
+	 * Switch between moving the knobs with left and with transforms.
+	 */
+	private void setFrameRendering(boolean frameRendering) {
+		if (this.frameRendering == frameRendering) {
+			return;
+		}
+		this.frameRendering = frameRendering;
+		List<Element> knobs = new ArrayList<Element>(thumbElements);
+		knobs.add(knobElemMin);
+		knobs.add(knobElemMax);
+		for (Element knob : knobs) {
+			if (frameRendering) {
+				DOM.setStyleAttribute(knob, "left", "0px");
+			} else {
+				setTranslateX(knob, Integer.MIN_VALUE);
+			}
+		}
+		if (!frameRendering) {
+			setTransform(progressElementMin, "");
+			setTransform(progressElementMax, "");
+		}
+		// measure the knobs on the next layout
+		lastLineWidth = -1;
+	}
+
+	/**
+	 * Switch between drawing into a canvas and building the slider from
+	 * elements. Browsers without a canvas keep the elements. The line element
+	 * stays in the layout, hidden, since the line is measured from it.
+	 */
+	private void setCanvasRendering(boolean canvasRendering) {
+		if (canvasRendering == (canvasRenderer != null)) {
+			return;
+		}
+		if (canvasRendering) {
+			canvasRenderer = CanvasRenderer.createIfSupported();
+			if (canvasRenderer == null) {
+				VConsole.log("No canvas support, the slider is drawn with elements");
+				return;
+			}
+			DOM.insertChild(getElement(), canvasRenderer.getElement(), 0);
+			canvasRenderer.setEnabled(enabled);
+			for (Element elem : labelElements) {
+				DOM.setStyleAttribute(elem, "display", "none");
+			}
+			for (Element elem : tickElements) {
+				DOM.setStyleAttribute(elem, "display", "none");
+			}
+		} else {
+			DOM.removeChild(getElement(), canvasRenderer.getElement());
+			canvasRenderer = null;
+		}
+		DOM.setStyleAttribute(lineElement, "visibility", canvasRenderer != null ? "hidden" : "");
+		DOM.setStyleAttribute(progressElementMin, "display", canvasRenderer != null ? "none" : "");
+		DOM.setStyleAttribute(progressElementMax, "display", canvasRenderer != null ? "none" : "");
+		showKnobElements();
+		labelsDirty = true;
+		ticksDirty = true;
+		// measure on the next layout
+		lastLineWidth = -1;
+	}
+
+	/**
+	 * Show the knob or thumb elements in use, none when drawing into a canvas.
+	 */
+	private void showKnobElements() {
+		int count = thumbValues == null || canvasRenderer != null ? 0 : thumbValues.length;
+		for (int i = 0; i < thumbElements.size(); i++) {
+			DOM.setStyleAttribute(thumbElements.get(i), "display", i < count ? "" : "none");
+		}
+		boolean knobs = thumbValues == null && canvasRenderer == null;
+		DOM.setStyleAttribute(knobElemMin, "display", knobs ? "" : "none");
+		DOM.setStyleAttribute(knobElemMax, "display", knobs ? "" : "none");
+	}
+
+	/**
+	 * Hand the ticks and labels to the canvas renderer, laid out like the
+	 * elements would be.
+	 */
+	private void drawCanvasMarks(int lineWidth) {
+		AxisScale labelScale = getLabelScale(lineWidth);
+		int labelCount = labelScale != null ? labelScale.size() : numLabels > 0 ? numLabels + 1 : 0;
+		String[] texts = new String[labelCount];
+		int[] labelOffsets = new int[labelCount];
+		for (int i = 0; i < labelCount; i++) {
+			texts[i] = getLabelText(labelScale, i);
+			int labelWidth = canvasRenderer.measureLabel(texts[i]);
+			int offset = getMarkCenter(labelScale, i, numLabels, lineWidth) - (labelWidth / 2);
+			offset = Math.min(offset, lineWidth - labelWidth);
+			labelOffsets[i] = Math.max(offset, 0);
+		}
+		AxisScale tickScale = getTickScale(lineWidth);
+		int tickCount = tickScale != null ? tickScale.size() : numTicks > 0 ? numTicks + 1 : 0;
+		int[] tickOffsets = new int[tickCount];
+		for (int i = 0; i < tickCount; i++) {
+			tickOffsets[i] = Math.min(getMarkCenter(tickScale, i, numTicks, lineWidth), lineWidth - 1);
+		}
+		canvasRenderer.setMarks(tickOffsets, texts, labelOffsets);
+		labelsDirty = false;
+		ticksDirty = false;
+	}
+
+	/**
+	 * Draw the labels along the line. All labels are written first, then the
+	 * ones with a text not seen before are measured in one pass, then all are
+	 * positioned, so that drawing costs at most one reflow.
+	 */
+	private void drawLabels() {
+		// Abort if not attached
+		if (!isAttached()) {
+			return;
+		}
+		if (canvasRenderer != null) {
+			// the canvas takes the ticks and labels together
+			drawCanvasMarks(getLineWidth());
+			return;
+		}
+		double start = instrumentation != null ? Duration.currentTimeMillis() : 0;
+		// Draw the labels
+		int lineWidth = getLineWidth();
+		// A zoomable or automatic density slider marks the visible window
+		// at its own level of detail instead of dividing the range evenly
+		AxisScale scale = getLabelScale(lineWidth);
+		int count = scale != null ? scale.size() : numLabels > 0 ? numLabels + 1 : 0;
+		if (count > 0) {
+			// Sliders sharing a configuration and a formatter share the
+			// label texts and offsets
+			SharedConfiguration.Layout layout = scale != null ? null : getSharedLayout(lineWidth);
+			if (layout != null && labelFormatter != configuration.getLabelFormatter()) {
+				layout = null;
+			}
+			boolean cached = layout != null && layout.labelOffsets != null;
+			// Create the labels or make them visible, and set their text
+			String[] texts = cached ? layout.labelTexts : new String[count];
+			if (!cached && labelWidths.size() + count > MAX_CACHED_LABEL_WIDTHS) {
+				// Make room before the pass, so no width measured in it is
+				// dropped before the labels are laid out
+				labelWidths.clear();
+			}
+			for (int i = 0; i < count; i++) {
+				Element label = getLabelElement(i);
+				// Set the label text
+				String text = texts[i];
+				if (!cached) {
+					text = getLabelText(scale, i);
+					texts[i] = text;
+				}
+				if (!text.equals(labelTexts.get(i))) {
+					DOM.setElementProperty(label, "innerHTML", text);
+					labelTexts.set(i, text);
+				}
+				DOM.setStyleAttribute(label, "display", "");
+				if (!cached && !labelWidths.containsKey(text)) {
+					// Move to the left so the label width is not clipped by
+					// the shell
+					DOM.setStyleAttribute(label, "visibility", "hidden");
+					DOM.setStyleAttribute(label, "left", "0px");
+				}
+			}
+			int[] offsets = cached ? layout.labelOffsets : new int[count];
+			if (!cached) {
+				// Measure the labels with new texts
+				int[] widths = new int[count];
+				for (int i = 0; i < count; i++) {
+					Integer width = labelWidths.get(texts[i]);
+					if (width == null) {
+						width = DOM.getElementPropertyInt(labelElements.get(i), "offsetWidth");
+						labelWidths.put(texts[i], width);
+					}
+					widths[i] = width;
+				}
+				// Lay out the labels relative to the line
+				for (int i = 0; i < count; i++) {
+					int labelWidth = widths[i];
+					int offset = getMarkCenter(scale, i, numLabels, lineWidth) - (labelWidth / 2);
+					offset = Math.min(offset, lineWidth - labelWidth);
+					offsets[i] = Math.max(offset, 0);
+				}
+				if (layout != null) {
+					layout.labelTexts = texts;
+					layout.labelOffsets = offsets;
+				}
+			}
+			// Position the labels and make them visible
+			for (int i = 0; i < count; i++) {
+				Element label = labelElements.get(i);
+				DOM.setStyleAttribute(label, "left", (lineLeftOffset + offsets[i]) + "px");
+				DOM.setStyleAttribute(label, "visibility", "visible");
+			}
+			// Hide unused labels
+			for (int i = count; i < labelElements.size(); i++) {
+				DOM.setStyleAttribute(labelElements.get(i), "display", "none");
+			}
+		} else { // Hide all labels
+			for (Element elem : labelElements) {
+				DOM.setStyleAttribute(elem, "display", "none");
+			}
+		}
+		labelsDirty = false;
+		if (instrumentation != null) {
+			instrumentation.drawn(SliderInstrumentation.DRAW_LABELS, start);
+		}
+	}
+
+	/**
+	 * Return the text of a label.
+	 * 
+	 * @param scale
+	 *            the marks, null if the labels divide the range evenly
+	 * @param index
+	 */
+	private String getLabelText(AxisScale scale, int index) {
+		if (scale == null) {
+			return formatLabel(rangeMin + (getTotalRange() * index / numLabels));
+		}
+		if (scale.isTime()) {
+			return scale.formatTime(scale.getValue(index));
+		}
+		return formatLabel(scale.getValue(index));
+	}
+
+	/**
+	 * Return the center of a tick or label relative to the line.
+	 * 
+	 * @param scale
+	 *            the marks, null if they divide the range evenly
+	 * @param index
+	 * @param slots
+	 *            the number of slots between evenly dividing marks
+	 * @param lineWidth
+	 */
+	private int getMarkCenter(AxisScale scale, int index, int slots, int lineWidth) {
+		if (scale == null) {
+			return lineWidth * index / slots;
+		}
+		return (int) (lineWidth * getKnobPercent(scale.getValue(index)));
+	}
+
+	/**
+	 * Return the label element at an index, creating it if needed.
+	 */
+	private Element getLabelElement(int index) {
+		while (labelElements.size() <= index) {
+			Element label = DOM.createDiv();
+			DOM.setStyleAttribute(label, "position", "absolute");
+			DOM.setStyleAttribute(label, "display", "none");
+			if (enabled) {
+				DOM.setElementProperty(label, "className", "gwt-VRangeSliderBar-label");
+			} else {
+				DOM.setElementProperty(label, "className", "gwt-VRangeSliderBar-label-disabled");
+			}
+			DOM.appendChild(getElement(), label);
+			labelElements.add(label);
+			labelTexts.add(null);
+		}
+		return labelElements.get(index);
+	}
+
+	/**
+	 * Return the label marks of a zoomable or automatic density slider, null
+	 * if the labels divide the range evenly. The marks are created again only
+	 * when the window, the time axis or the number of labels that fit the
+	 * width bucket changes.
+	 */
+	private AxisScale getLabelScale(int lineWidth) {
+		if (!zoomable && !autoDensity) {
+			return null;
+		}
+		int maxMarks = getMaxLabels(lineWidth);
+		if (labelScale == null || !labelScale.isFor(getViewMin(), getViewMax(), maxMarks, timeAxis)) {
+			labelScale = AxisScale.create(getViewMin(), getViewMax(), maxMarks, timeAxis);
+		}
+		return labelScale;
+	}
+
+	/**
+	 * Return the tick marks of a zoomable or automatic density slider, null
+	 * if the ticks divide the range evenly. With automatic density there are
+	 * five ticks per label if they fit, since those subdivide the label
+	 * steps, otherwise as many as fit.
+	 */
+	private AxisScale getTickScale(int lineWidth) {
+		if (!zoomable && !autoDensity) {
+			return null;
+		}
+		int maxMarks = numTicks;
+		if (autoDensity) {
+			int fit = Math.min(numTicks, Math.min(MAX_AUTO_MARKS, getWidthBucket(lineWidth) / MIN_TICK_SPACING));
+			int labels = getMaxLabels(lineWidth);
+			if (labels > 0 && labels * 5 <= fit) {
+				maxMarks = labels * 5;
+			} else if (labels > 0 && labels <= fit) {
+				maxMarks = labels;
+			} else {
+				maxMarks = fit;
+			}
+		}
+		if (tickScale == null || !tickScale.isFor(getViewMin(), getViewMax(), maxMarks, timeAxis)) {
+			tickScale = AxisScale.create(getViewMin(), getViewMax(), maxMarks, timeAxis);
+		}
+		return tickScale;
+	}
+
+	/**
+	 * Return the most labels to show: the configured number, and with
+	 * automatic density no more than fit the width bucket side by side.
+	 */
+	private int getMaxLabels(int lineWidth) {
+		if (!autoDensity || numLabels <= 0) {
+			return numLabels;
+		}
+		int labelWidth;
+		if (timeAxis) {
+			labelWidth = measureLabel(TIME_LABEL_SAMPLE);
+		} else {
+			labelWidth = Math.max(measureLabel(formatLabel(getViewMin())), measureLabel(formatLabel(getViewMax())));
+		}
+		int fit = getWidthBucket(lineWidth) / (labelWidth + LABEL_GAP);
+		return Math.max(1, Math.min(numLabels, Math.min(MAX_AUTO_MARKS, fit)));
+	}
+
+	private static int getWidthBucket(int lineWidth) {
+		return lineWidth - lineWidth % WIDTH_BUCKET;
+	}
+
+	/**
+	 * Return the width of a label text, measuring it in the first label
+	 * element if it was not measured before.
+	 */
+	private int measureLabel(String text) {
+		if (canvasRenderer != null) {
+			return canvasRenderer.measureLabel(text);
+		}
+		Integer width = labelWidths.get(text);
+		if (width == null) {
+			Element label = getLabelElement(0);
+			DOM.setElementProperty(label, "innerHTML", text);
+			labelTexts.set(0, text);
+			DOM.setStyleAttribute(label, "visibility", "hidden");
+			DOM.setStyleAttribute(label, "left", "0px");
+			DOM.setStyleAttribute(label, "display", "");
+			width = DOM.getElementPropertyInt(label, "offsetWidth");
+			if (labelWidths.size() >= MAX_CACHED_LABEL_WIDTHS) {
+				labelWidths.clear();
+			}
+			labelWidths.put(text, width);
+		}
+		return width;
+	}
+
+	/**
+	 * Draw the tick along the line. The ticks share one style, so a single
+	 * tick is measured and the result kept until the style changes.
+	 */
+	private void drawTicks() {
+		// Abort if not attached
+		if (!isAttached()) {
+			return;
+		}
+		if (canvasRenderer != null) {
+			// the canvas takes the ticks and labels together
+			drawCanvasMarks(getLineWidth());
+			return;
+		}
+		double start = instrumentation != null ? Duration.currentTimeMillis() : 0;
+		// Draw the ticks
+		int lineWidth = getLineWidth();
+		AxisScale scale = getTickScale(lineWidth);
+		int count = scale != null ? scale.size() : numTicks > 0 ? numTicks + 1 : 0;
+		if (count > 0) {
+			// Create the ticks or make them visible
+			for (int i = 0; i < count; i++) {
+				Element tick = null;
+				if (i < tickElements.size()) {
+					tick = tickElements.get(i);
+				} else {
+					// Create the new tick
+					tick = DOM.createDiv();
+					DOM.setStyleAttribute(tick, "position", "absolute");
 					DOM.setStyleAttribute(tick, "display", "none");
 					DOM.appendChild(getElement(), tick);
 					tickElements.add(tick);
@@ -654,17 +1907,33 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 					DOM.setElementProperty(tick, "className",
 							"gwt-VRangeSliderBar-tick gwt-VRangeSliderBar-tick-disabled");
 				}
-				// Position the tick and make it visible
-				DOM.setStyleAttribute(tick, "visibility", "hidden");
 				DOM.setStyleAttribute(tick, "display", "");
-				int tickWidth = DOM.getElementPropertyInt(tick, "offsetWidth");
-				int tickLeftOffset = lineLeftOffset + (lineWidth * i / numTicks) - (tickWidth / 2);
-				tickLeftOffset = Math.min(tickLeftOffset, lineLeftOffset + lineWidth - tickWidth);
-				DOM.setStyleAttribute(tick, "left", tickLeftOffset + "px");
+			}
+			// Take the offsets from the shared layout, or measure once and
+			// lay out the ticks relative to the line
+			SharedConfiguration.Layout layout = scale != null ? null : getSharedLayout(lineWidth);
+			int[] offsets = layout != null ? layout.tickOffsets : null;
+			if (offsets == null) {
+				if (tickWidth < 0) {
+					tickWidth = DOM.getElementPropertyInt(tickElements.get(0), "offsetWidth");
+				}
+				offsets = new int[count];
+				for (int i = 0; i < count; i++) {
+					int offset = getMarkCenter(scale, i, numTicks, lineWidth) - (tickWidth / 2);
+					offsets[i] = Math.min(offset, lineWidth - tickWidth);
+				}
+				if (layout != null) {
+					layout.tickOffsets = offsets;
+				}
+			}
+			// Position the ticks and make them visible
+			for (int i = 0; i < count; i++) {
+				Element tick = tickElements.get(i);
+				DOM.setStyleAttribute(tick, "left", (lineLeftOffset + offsets[i]) + "px");
 				DOM.setStyleAttribute(tick, "visibility", "visible");
 			}
 			// Hide unused ticks
-			for (int i = (numTicks + 1); i < tickElements.size(); i++) {
+			for (int i = count; i < tickElements.size(); i++) {
 				DOM.setStyleAttribute(tickElements.get(i), "display", "none");
 			}
 		} else { // Hide all ticks
@@ -672,6 +1941,106 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 				DOM.setStyleAttribute(elem, "display", "none");
 			}
 		}
+		ticksDirty = false;
+		if (instrumentation != null) {
+			instrumentation.drawn(SliderInstrumentation.DRAW_TICKS, start);
+		}
+	}
+
+	/**
+	 * Draw the histogram bars behind the track. This only happens when the
+	 * counts or the size change; moving the knobs just updates which bars are
+	 * highlighted.
+	 */
+	private void drawHistogram() {
+		// Abort if not attached
+		if (!isAttached()) {
+			return;
+		}
+		int buckets = histogramCounts == null ? 0 : histogramCounts.length;
+		if (buckets > 0 && histogramElement == null) {
+			histogramElement = DOM.createDiv();
+			DOM.setStyleAttribute(histogramElement, "position", "absolute");
+			DOM.setElementProperty(histogramElement, "className", HISTOGRAM_CLASSNAME);
+			// first child, so that everything else is drawn over it
+			DOM.insertChild(getElement(), histogramElement, 0);
+		}
+		int maxCount = 1;
+		for (int i = 0; i < buckets; i++) {
+			maxCount = Math.max(maxCount, histogramCounts[i]);
+		}
+		int lineWidth = getLineWidth();
+		for (int i = 0; i < buckets; i++) {
+			Element bar;
+			if (i < barElements.size()) {
+				bar = barElements.get(i);
+			} else {
+				bar = DOM.createDiv();
+				DOM.setStyleAttribute(bar, "position", "absolute");
+				DOM.appendChild(histogramElement, bar);
+				barElements.add(bar);
+			}
+			double from = histogramOrigin + i * histogramBucketWidth;
+			int left = lineLeftOffset + (int) (getKnobPercent(from) * lineWidth);
+			int right = lineLeftOffset + (int) (getKnobPercent(from + histogramBucketWidth) * lineWidth);
+			DOM.setElementProperty(bar, "className", BAR_CLASSNAME);
+			DOM.setStyleAttribute(bar, "left", left + "px");
+			DOM.setStyleAttribute(bar, "width", Math.max(1, right - left - 1) + "px");
+			DOM.setStyleAttribute(bar, "height", (100.0 * histogramCounts[i] / maxCount) + "%");
+			DOM.setStyleAttribute(bar, "display", "");
+		}
+		// Hide unused bars
+		for (int i = buckets; i < barElements.size(); i++) {
+			DOM.setStyleAttribute(barElements.get(i), "display", "none");
+		}
+		selectedBarFirst = 0;
+		selectedBarLast = 0;
+		histogramDirty = false;
+		updateHistogramSelection();
+	}
+
+	/**
+	 * Highlight the bars inside the selected range, touching only the bars
+	 * whose state changed since the last call.
+	 */
+	private void updateHistogramSelection() {
+		if (histogramCounts == null || histogramDirty) {
+			return;
+		}
+		int first = bucketOf(getMinCurrValue());
+		int last = bucketOf(getMaxCurrValue()) + 1;
+		int from = Math.min(first, selectedBarFirst);
+		int to = Math.max(last, selectedBarLast);
+		for (int i = from; i < to; i++) {
+			boolean selected = i >= first && i < last;
+			boolean wasSelected = i >= selectedBarFirst && i < selectedBarLast;
+			if (selected != wasSelected) {
+				DOM.setElementProperty(barElements.get(i), "className", selected ? BAR_SELECTED_CLASSNAME
+						: BAR_CLASSNAME);
+			}
+		}
+		selectedBarFirst = first;
+		selectedBarLast = last;
+	}
+
+	/**
+	 * Return the histogram bucket of a value, confined to the existing
+	 * buckets.
+	 */
+	private int bucketOf(double value) {
+		int bucket = (int) Math.floor((value - histogramOrigin) / histogramBucketWidth);
+		return Math.max(0, Math.min(histogramCounts.length - 1, bucket));
+	}
+
+	/**
+	 * Return the width of the line, as measured on the last resize if there
+	 * was one.
+	 */
+	private int getLineWidth() {
+		if (lastLineWidth >= 0) {
+			return lastLineWidth;
+		}
+		return DOM.getElementPropertyInt(lineElement, "offsetWidth");
 	}
 
 	/**
@@ -680,6 +2049,9 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	private void highlight() {
 		String styleName = getStylePrimaryName();
 		DOM.setElementProperty(getElement(), "className", styleName + " " + styleName + "-focused");
+		if (canvasRenderer != null) {
+			canvasRenderer.setFocused(true);
+		}
 	}
 
 	/**
@@ -697,15 +2069,27 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 *            the mouse event
 	 */
 	private void slideKnob(Event event) {
+		if (thumbValues != null) {
+			slideThumb(event);
+			return;
+		}
 	
 		
 		int pointClicked = DOM.eventGetClientX(event);
 
 		
-		int minLeft = DOM.getAbsoluteLeft(knobElemMin);
-		int maxLeft = DOM.getAbsoluteLeft(knobElemMax);
-
-		VConsole.log("VRangeSliderBar.onBrowserEvent()" + " " + minLeft + " " + maxLeft);
+		int minLeft;
+		int maxLeft;
+		if (frameRendering || canvasRenderer != null) {
+			// offsetLeft does not include transforms and canvas knobs have no
+			// elements, work the knob positions out from the values instead
+			int shellLeft = getLineAbsoluteLeft() - lineLeftOffset;
+			minLeft = shellLeft + knobLeft(minCurrValue, lastLineWidth, knobMinWidth);
+			maxLeft = shellLeft + knobLeft(maxCurrValue, lastLineWidth, knobMaxWidth);
+		} else {
+			minLeft = DOM.getAbsoluteLeft(knobElemMin);
+			maxLeft = DOM.getAbsoluteLeft(knobElemMax);
+		}
 
 		if (pointClicked <= minLeft) {
 			_target = knobElemMin;
@@ -727,20 +2111,21 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			
 		}
 
-		VConsole.log("target to move is  " + _target.getClassName());
 		if (pointClicked > 0) {
-			int lineWidth = DOM.getElementPropertyInt(lineElement, "offsetWidth");
-			int lineLeft = DOM.getAbsoluteLeft(lineElement);
+			// frame rendering uses the sizes measured on resize and drag start
+			int lineWidth = frameRendering ? lastLineWidth : DOM.getElementPropertyInt(lineElement, "offsetWidth");
+			int lineLeft = getLineAbsoluteLeft();
 			double percent = (double) (DOM.eventGetClientX(event) - lineLeft) / lineWidth * 1.0;
 
 			if (_target == knobElemMin) {
-				setCurrentValue(getTotalRange() * percent + rangeMin, this.maxCurrValue, superImmediate);
+				setCurrentValue(getValueAt(percent), this.maxCurrValue, false);
 			}
 			// max target
 			else if (_target == knobElemMax) {
-				setCurrentValue(this.minCurrValue, getTotalRange() * percent + rangeMin, superImmediate);
+				setCurrentValue(this.minCurrValue, getValueAt(percent), false);
 
 			}
+			trackVelocity(_target == knobElemMin ? minCurrValue : maxCurrValue);
 		}
 		
 		if( minCurrValue > maxCurrValue) {
@@ -772,6 +2157,9 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			}
 			DOM.setElementProperty(lineElement, "className",
 					"gwt-VRangeSliderBar-line gwt-VRangeSliderBar-line-sliding");
+			if (canvasRenderer != null) {
+				canvasRenderer.setSliding(true);
+			}
 			// DOM.setElementProperty(knobElemMin, "className",
 			// "gwt-VRangeSliderBar-knob gwt-VRangeSliderBar-knob-sliding");
 
@@ -798,10 +2186,16 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 			}
 
 			DOM.setElementProperty(lineElement, "className", SLIDER_BAR_LINE);
-
+			if (canvasRenderer != null) {
+				canvasRenderer.setSliding(false);
+			}
 		}
 
 		if (fireEvent) {
+			if (instrumentation != null) {
+				// the counters ride along with the final value of a drag
+				client.updateVariable(id, "stats", instrumentation.getCounters(), false);
+			}
 			updateValueToServer();
 		}
 
@@ -812,6 +2206,9 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 	 */
 	private void unhighlight() {
 		DOM.setElementProperty(getElement(), "className", getStylePrimaryName());
+		if (canvasRenderer != null) {
+			canvasRenderer.setFocused(false);
+		}
 	}
 
 	@Override
@@ -822,34 +2219,191 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		if (connClient.updateComponent(this, uidl, true)) {
 			return;
 		}
-		superImmediate = uidl.getBooleanAttribute("superimmediate");
+		if (instrumentation != null) {
+			instrumentation.updateReceived();
+		}
+		// The server may send only the attributes that changed, keep the
+		// current state for the rest
+		if (!initialized && !uidl.hasAttribute("rangeMin") && !uidl.hasAttribute("cfg")) {
+			// a partial update for a widget that never got the full state
+			client.updateVariable(id, "repaintall", true, true);
+			return;
+		}
+		if (uidl.hasAttribute("superimmediate")) {
+			superImmediate = uidl.getBooleanAttribute("superimmediate");
+			sendInterval = uidl.getIntAttribute("sendinterval");
+			sendTrailing = uidl.getBooleanAttribute("sendtrailing");
+		}
 		immediate = uidl.getBooleanAttribute("immediate");
 		readonly = uidl.getBooleanAttribute("readonly");
 		boolean disables = uidl.getBooleanAttribute("disabled");
-		double min = uidl.getDoubleAttribute("rangeMin");
-		double max = uidl.getDoubleAttribute("rangeMax");
-		int ticks = uidl.getIntAttribute("numticks");
-		int numLabel = uidl.getIntAttribute("numlabels");
-		double resolution = uidl.getDoubleAttribute("stepsize");
-		this.stepSize = (resolution);
-		this.rangeMin = (min);
-		this.rangeMax = (max);
-
-		this.minCurrValue = uidl.getDoubleAttribute("knobmin");
-		this.maxCurrValue = uidl.getDoubleAttribute("knobmax");
-		
-		appendString = uidl.getStringAttribute("append");
-
-		setEnabled(!disables);
-		setNumLabels(numLabel);
-		setNumTicks(ticks);
-		
-		setCurrentValue(minCurrValue, maxCurrValue, false);
+		if (uidl.hasAttribute("cfg")) {
+			String cfg = uidl.getStringAttribute("cfg");
+			if (cfg.length() == 0) {
+				// the settings of this slider alone follow
+				useConfiguration(null);
+			} else {
+				if (uidl.hasAttribute("cfgdata")) {
+					SharedConfiguration.register(cfg, uidl.getStringArrayAttribute("cfgdata"));
+				}
+				SharedConfiguration shared = SharedConfiguration.get(cfg);
+				if (shared == null) {
+					// painted before the slider that carries the settings
+					client.updateVariable(id, "cfgmissing", cfg, true);
+					return;
+				}
+				applyConfiguration(shared);
+				initialized = true;
+			}
+		}
+		if (uidl.hasAttribute("rangeMin")) {
+			double min = uidl.getDoubleAttribute("rangeMin");
+			double max = uidl.getDoubleAttribute("rangeMax");
+			if (min != rangeMin || max != rangeMax) {
+				this.rangeMin = (min);
+				this.rangeMax = (max);
+				labelsDirty = true;
+				// the marks of a scale and the histogram bars follow the range
+				ticksDirty = true;
+				histogramDirty = true;
+			}
+			initialized = true;
+		}
+		if (uidl.hasAttribute("stepsize")) {
+			this.stepSize = uidl.getDoubleAttribute("stepsize");
+		}
+		if (uidl.hasAttribute("numticks")) {
+			int ticks = uidl.getIntAttribute("numticks");
+			if (ticks != numTicks) {
+				this.numTicks = ticks;
+				ticksDirty = true;
+			}
+		}
+		if (uidl.hasAttribute("numlabels")) {
+			int numLabel = uidl.getIntAttribute("numlabels");
+			if (numLabel != numLabels) {
+				this.numLabels = numLabel;
+				labelsDirty = true;
+			}
+		}
+		if (uidl.hasAttribute("knobmin")) {
+			this.minCurrValue = uidl.getDoubleAttribute("knobmin");
+			this.maxCurrValue = uidl.getDoubleAttribute("knobmax");
+		}
+		if (uidl.hasAttribute("thumbs")) {
+			String thumbs = uidl.getStringAttribute("thumbs");
+			if (thumbs.length() == 0) {
+				setThumbValues(null);
+			} else {
+				String[] values = thumbs.split(",");
+				double[] parsed = new double[values.length];
+				for (int i = 0; i < values.length; i++) {
+					parsed[i] = Double.parseDouble(values[i]);
+				}
+				setThumbValues(parsed);
+			}
+		}
+		if (uidl.hasAttribute("histogram")) {
+			String counts = uidl.getStringAttribute("histogram");
+			if (counts.length() == 0) {
+				histogramCounts = null;
+			} else {
+				String[] values = counts.split(",");
+				histogramCounts = new int[values.length];
+				for (int i = 0; i < values.length; i++) {
+					histogramCounts[i] = Integer.parseInt(values[i]);
+				}
+				histogramOrigin = uidl.getDoubleAttribute("historigin");
+				histogramBucketWidth = uidl.getDoubleAttribute("histwidth");
+			}
+			histogramDirty = true;
+		}
+		if (uidl.hasAttribute("instrument")) {
+			boolean instrument = uidl.getBooleanAttribute("instrument");
+			if (!instrument) {
+				instrumentation = null;
+			} else if (instrumentation == null) {
+				instrumentation = new SliderInstrumentation();
+			}
+		}
+		if (uidl.hasAttribute("counts")) {
+			String counts = uidl.getStringAttribute("counts");
+			if (counts.length() == 0) {
+				countTable = null;
+			} else {
+				// differences to the previous entry in base 36, empty for 0
+				String[] deltas = counts.split(",", -1);
+				countTable = new int[deltas.length];
+				int total = 0;
+				for (int i = 0; i < deltas.length; i++) {
+					if (deltas[i].length() > 0) {
+						total += Integer.parseInt(deltas[i], 36);
+					}
+					countTable[i] = total;
+				}
+				countSpacing = uidl.getDoubleAttribute("countspacing");
+				countFormat = uidl.getStringAttribute("countformat");
+			}
+			shownCount = -1;
+		}
+		if (uidl.hasAttribute("prefetch")) {
+			prefetch = uidl.getBooleanAttribute("prefetch");
+		}
+		if (uidl.hasAttribute("autodensity")) {
+			boolean density = uidl.getBooleanAttribute("autodensity");
+			if (density != autoDensity) {
+				autoDensity = density;
+				labelsDirty = true;
+				ticksDirty = true;
+			}
+		}
+		if (uidl.hasAttribute("zoomable")) {
+			boolean wasZoomable = zoomable;
+			boolean wasTimeAxis = timeAxis;
+			double oldWindowMin = windowMin;
+			double oldWindowMax = windowMax;
+			zoomable = uidl.getBooleanAttribute("zoomable");
+			timeAxis = uidl.getBooleanAttribute("timeaxis");
+			setWindow(uidl.getDoubleAttribute("windowmin"), uidl.getDoubleAttribute("windowmax"));
+			if (zoomable != wasZoomable || timeAxis != wasTimeAxis || !sameValue(windowMin, oldWindowMin)
+					|| !sameValue(windowMax, oldWindowMax)) {
+				labelsDirty = true;
+				ticksDirty = true;
+				histogramDirty = true;
+			}
+		}
+		if (uidl.hasAttribute("framerendering")) {
+			setFrameRendering(uidl.getBooleanAttribute("framerendering"));
+			setCanvasRendering(uidl.getBooleanAttribute("canvasrendering"));
+		}
+		boolean formatChanged = false;
+		if (uidl.hasAttribute("append")) {
+			String append = uidl.getStringAttribute("append");
+			if (!append.equals(appendString)) {
+				appendString = append;
+				labelsDirty = true;
+				formatChanged = true;
+			}
+		}
+		if (uidl.hasAttribute("labeldecimals")) {
+			int decimals = uidl.getIntAttribute("labeldecimals");
+			String prefix = uidl.getStringAttribute("labelprefix");
+			boolean compact = uidl.getBooleanAttribute("labelcompact");
+			if (decimals != labelDecimals || !prefix.equals(labelPrefix) || compact != compactLabels) {
+				labelDecimals = decimals;
+				labelPrefix = prefix;
+				compactLabels = compact;
+				formatChanged = true;
+			}
+		}
+		if (formatChanged) {
+			updateLabelFormatter();
+		}
 
-//		VConsole.log("update from uidl range " + rangeMin + "    min =" + rangeMax);
-//		VConsole.log("update from uidl currt " + minCurrValue + " max " + maxCurrValue);
-		
-		
+		applyEnabled(!disables);
+		this.minCurrValue = confineValue(minCurrValue);
+		this.maxCurrValue = confineValue(maxCurrValue);
+		redraw();
 	}
 
 	@Override
@@ -967,7 +2521,11 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		 * The delay between shifts, which shortens as the user holds down the
 		 * button.
 		 */
-		private int repeatDelay = 30;
+		private int repeatDelay = KEY_REPEAT_DELAY;
+		/**
+		 * The shifts since the key was pressed.
+		 */
+		private int runs = 0;
 		/**
 		 * A bit indicating whether we are shifting to a higher or lower value.
 		 */
@@ -988,14 +2546,17 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 				firstRun = false;
 				startSliding(true, false);
 			}
-			// Slide the slider bar
-			if (shiftRight) {
-				// setCurrentValue(curValue + multiplier * stepSize,
-				// superImmediate);
+			// Slide the slider bar, faster the longer the key is held: the
+			// delay shortens first, then the steps per shift grow
+			runs++;
+			int acceleration = 1;
+			if (repeatDelay > KEY_REPEAT_MIN_DELAY) {
+				repeatDelay = Math.max(KEY_REPEAT_MIN_DELAY, repeatDelay * 4 / 5);
 			} else {
-				// setCurrentValue(curValue - multiplier *
-				// stepSize,superImmediate);
+				acceleration = Math.min(KEY_MAX_ACCELERATION, 1 << (runs / KEY_ACCELERATION_RUNS));
 			}
+			int steps = multiplier * acceleration;
+			shiftKnob(shiftRight ? steps : -steps);
 			// Repeat this timer until cancelled by keyup event
 			schedule(repeatDelay);
 		}
@@ -1012,9 +2573,42 @@ public class VRangeSliderBar extends FocusPanel implements Paintable, Field, Con
 		 */
 		public void schedule(int delayMillis, boolean shiftRight, int multiplier) {
 			firstRun = true;
+			repeatDelay = KEY_REPEAT_DELAY;
+			runs = 0;
 			this.shiftRight = shiftRight;
 			this.multiplier = multiplier;
 			super.schedule(delayMillis);
 		}
 	}
+
+	/**
+	 * The timer used to send the latest knob values once the send interval
+	 * has elapsed, so that moves made inside the interval are not lost.
+	 */
+	private class SendTimer extends Timer {
+		/**
+		 * A bit indicating whether the timer is waiting to fire.
+		 */
+		private boolean scheduled = false;
+
+		@Override
+		public void run() {
+			scheduled = false;
+			if (slidingMouse) {
+				updateValueToServer();
+			}
+		}
+
+		@Override
+		public void schedule(int delayMillis) {
+			scheduled = true;
+			super.schedule(delayMillis);
+		}
+
+		@Override
+		public void cancel() {
+			scheduled = false;
+			super.cancel();
+		}
+	}
 }
\ No newline at end of file
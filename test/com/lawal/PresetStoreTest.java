@@ -0,0 +1,168 @@
+package com.lawal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The log format of {@link PresetStore}: replay on reopening, recovery from
+ * a damaged last record, compaction, locking and the maximum delay.
+ */
+public class PresetStoreTest {
+
+	private static final SliderPreset YEARS = new SliderPreset(1990, 2030, 0.5, 2000, 2010.5);
+	private static final SliderPreset PERCENT = new SliderPreset(0, 100, 1, 25, 75);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reopenReplaysSavesAndRemovals() throws IOException {
+		File file = folder.newFile("presets");
+		PresetStore store = new PresetStore(file, 3);
+		store.put("alice", "year", "recent", YEARS);
+		store.put("alice", "year", "old", PERCENT);
+		store.put("bob", "year", "recent", PERCENT);
+		store.put("alice", "year", "old", YEARS);
+		store.remove("bob", "year", "recent");
+		store.close();
+
+		store = new PresetStore(file);
+		try {
+			assertEquals(2, store.size());
+			assertEquals(YEARS, store.get("alice", "year", "recent"));
+			assertEquals(YEARS, store.get("alice", "year", "old"));
+			assertNull(store.get("bob", "year", "recent"));
+			assertEquals(0, store.getDiscardedBytes());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void damagedLastRecordIsDiscarded() throws IOException {
+		File file = folder.newFile("presets");
+		PresetStore store = new PresetStore(file, 1);
+		store.put("alice", "year", "recent", YEARS);
+		store.close();
+		long end = lastRecordEnd(file);
+		store = new PresetStore(file, 1);
+		store.put("alice", "year", "old", PERCENT);
+		store.close();
+
+		// flip a byte of the last preset, as a write torn by a crash would
+		long last = lastRecordEnd(file) - 1;
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.seek(last);
+			int flipped = raw.read() ^ 0xFF;
+			raw.seek(last);
+			raw.write(flipped);
+		} finally {
+			raw.close();
+		}
+
+		store = new PresetStore(file, 1);
+		try {
+			assertEquals(1, store.size());
+			assertEquals(YEARS, store.get("alice", "year", "recent"));
+			assertNull(store.get("alice", "year", "old"));
+			assertEquals(last + 1 - end, store.getDiscardedBytes());
+			store.put("alice", "year", "old", PERCENT);
+		} finally {
+			store.close();
+		}
+		store = new PresetStore(file);
+		try {
+			assertEquals(PERCENT, store.get("alice", "year", "old"));
+			assertEquals(0, store.getDiscardedBytes());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void compactionKeepsOnlyCurrentPresets() throws IOException {
+		File file = folder.newFile("presets");
+		PresetStore store = new PresetStore(file);
+		for (int i = 0; i < 100; i++) {
+			store.put("alice", "year", "recent", new SliderPreset(0, 100, 1, i, 100));
+		}
+		store.put("bob", "price", "cheap", PERCENT);
+		store.put("bob", "price", "dear", YEARS);
+		store.remove("bob", "price", "dear");
+		File compacted = new File(folder.getRoot(), "compacted");
+		store.compactTo(compacted);
+		long logged = lastRecordEnd(file);
+		store.close();
+
+		store = new PresetStore(compacted);
+		try {
+			assertEquals(2, store.size());
+			assertEquals(new SliderPreset(0, 100, 1, 99, 100), store.get("alice", "year", "recent"));
+			assertEquals(PERCENT, store.get("bob", "price", "cheap"));
+			assertNull(store.get("bob", "price", "dear"));
+		} finally {
+			store.close();
+		}
+		assertTrue(lastRecordEnd(compacted) < logged / 10);
+	}
+
+	@Test
+	public void fileOpenInAnotherStoreIsRejected() throws IOException {
+		File file = folder.newFile("presets");
+		PresetStore store = new PresetStore(file);
+		try {
+			new PresetStore(file);
+			fail("opened a locked store");
+		} catch (IOException expected) {
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void pendingBatchIsWrittenAfterMaxDelay() throws Exception {
+		File file = folder.newFile("presets");
+		PresetStore store = new PresetStore(file, 64, 50);
+		try {
+			store.put("alice", "year", "recent", YEARS);
+			assertEquals(16, lastRecordEnd(file));
+			Thread.sleep(500);
+			assertTrue(lastRecordEnd(file) > 16);
+		} finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * Returns the end of the last record in a store file, reading it
+	 * directly.
+	 */
+	private static long lastRecordEnd(File file) throws IOException {
+		RandomAccessFile raw = new RandomAccessFile(file, "r");
+		try {
+			long position = 16;
+			while (position + 8 <= raw.length()) {
+				raw.seek(position);
+				int length = raw.readInt();
+				if (length == 0) {
+					break;
+				}
+				position += 8 + length;
+			}
+			return position;
+		} finally {
+			raw.close();
+		}
+	}
+}